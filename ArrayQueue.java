@@ -0,0 +1,184 @@
+import java.util.ArrayList;
+
+/**
+ * A ring-buffer implementation of QueueInterface. A drop-in replacement for MyQueue that
+ * stores its data in a circular array instead of allocating a Node for every enqueue.
+ * The Queue honors the same maximum size as MyQueue; the array simply grows on demand up to it.
+ * The array length is always a power of two, so wrapping an index is a single mask.
+ * 
+ * @author Mike Meyers
+ *
+ * @param <T> data type
+ */
+public class ArrayQueue<T> implements QueueInterface<T> {
+	
+	private static final int DEFAULT_CAPACITY = 16;
+	private static final int MAX_CAPACITY = 1 << 30;
+	
+	private Object[] data; //The circular buffer holding the Queue's data
+	private int head; //Index of the first item in line
+	private int count; //The number of items in the Queue
+	private final int MAX_SIZE;
+	
+	/**
+	 * Create an empty Queue containing no data. Queue will have maximum size.
+	 */
+	public ArrayQueue() {
+		this(Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Create an empty Queue containing no data, but with an indicated maximum size.
+	 * @param maxVal the maximum size of the Queue
+	 */
+	public ArrayQueue(int maxVal) {
+		MAX_SIZE = maxVal;
+		data = new Object[capacityFor(Math.min(maxVal, DEFAULT_CAPACITY))];
+		head = 0;
+		count = 0;
+	}
+	
+	/**
+	 * Create a Queue with a single data Object. Queue will have unlimited size.
+	 * @param data the Object to be entered into the Queue
+	 */
+	public ArrayQueue(T data) {
+		this(data, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Create a Queue with a single data Object and indicated maximum size
+	 * @param data the Object to be entered into the Queue
+	 * @param maxVal the maximum size of the Queue
+	 */
+	public ArrayQueue(T data, int maxVal) {
+		this(maxVal);
+		enqueue(data);
+	}
+	
+	/**
+	 * Determine if the Queue is empty (not containing data)
+	 * @return true if the Queue is empty, false if there is data present
+	 */
+	@Override
+	public boolean isEmpty() {
+		return count == 0;
+	}
+	
+	/**
+	 * Determine if the Queue is full
+	 * @return true if the Queue is full, false if it is not full
+	 */
+	@Override
+	public boolean isFull() {
+		return count == MAX_SIZE;
+	}
+	
+	/**
+	 * Remove the first object from the queue
+	 * @return the object T that was the first item in the queue
+	 * @throws QueueUnderflowException if there is no data to return (if the queue is empty)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public T dequeue() throws QueueUnderflowException {
+		//Check if the Queue is empty -- throw an Exception if so
+		if (isEmpty()) throw new QueueUnderflowException();
+		
+		//Clear the slot so the Queue does not hold on to the removed Object
+		T returnData = (T) data[head];
+		data[head] = null;
+		head = (head + 1) & (data.length - 1);
+		count--;
+		return returnData;
+	}
+	
+	/**
+	 * Determine the current size of the Queue
+	 * @return the size of the Queue (number of items in Queue)
+	 */
+	@Override
+	public int size() {
+		return count;
+	}
+	
+	/**
+	 * Add an object of type T to the Queue
+	 * @param e the object of type T to be added to the Queue
+	 * @throws QueueOverflowException if the Queue is full
+	 */
+	@Override
+	public boolean enqueue(T e) throws QueueOverflowException {
+		//Check if the Queue is currently full. If so, throw Exception
+		if (isFull()) throw new QueueOverflowException();
+		
+		//Grow the buffer if needed, but never past the maximum size
+		if (count == data.length) {
+			if (data.length == MAX_CAPACITY) throw new QueueOverflowException();
+			grow();
+		}
+		
+		data[(head + count) & (data.length - 1)] = e;
+		count++;
+		return true;
+	}
+	
+	/**
+	 * Retrieve all data stored in the Queue as a single String
+	 * @param delimiter the String to be used to separate the data retrieved from each object
+	 * @return the data from each object in the Queue, delimited by the indicated String
+	 */
+	@Override
+	public String toString(String delimiter) {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			if (i > 0) builder.append(delimiter);
+			builder.append(data[(head + i) & (data.length - 1)]);
+		}
+		return builder.toString();
+	}
+	
+	/**
+	 * Fill the Queue with elements from an ArrayList. If there are already objects in the Queue,
+	 * the ArrayList elements will enter the Queue from the back
+	 * @param list the ArrayList of elements to be added to the Queue
+	 * @throws QueueOverflowException if the Queue fills before the list is exhausted
+	 */
+	@Override
+	public void fill(ArrayList<T> list) {
+		for (int i = 0; i < list.size(); i++) {
+			enqueue(list.get(i));
+		}
+	}
+	
+	/**
+	 * Return a String representation of the data in each item of the Queue
+	 * @return a single String representing the entire Queue
+	 */
+	@Override
+	public String toString() {
+		return toString("");
+	}
+	
+	/**
+	 * Move the Queue into a larger buffer, unwrapping it so the first item is at index 0
+	 */
+	private void grow() {
+		Object[] larger = new Object[data.length * 2];
+		for (int i = 0; i < count; i++) {
+			larger[i] = data[(head + i) & (data.length - 1)];
+		}
+		data = larger;
+		head = 0;
+	}
+	
+	/**
+	 * Round a capacity up to the next power of two
+	 * @param capacity the minimum capacity needed
+	 * @return the smallest power of two at least as large as capacity
+	 */
+	private static int capacityFor(int capacity) {
+		if (capacity >= MAX_CAPACITY) return MAX_CAPACITY;
+		return Math.max(1, Integer.highestOneBit(Math.max(capacity - 1, 1) << 1));
+	}
+}
@@ -0,0 +1,169 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * An array-backed implementation of StackInterface. A drop-in replacement for MyStack that
+ * stores its data in a growable array instead of allocating a Node for every push.
+ * The Stack honors the same maximum size as MyStack; the array simply grows on demand up to it.
+ * 
+ * @author Mike Meyers
+ *
+ * @param <T> data type
+ */
+public class ArrayStack<T> implements StackInterface<T> {
+	
+	private static final int DEFAULT_CAPACITY = 16;
+	
+	private Object[] data; //The data in the Stack, bottom first
+	private int count; //The number of items in the Stack
+	public final int MAX_SIZE;
+	
+	/**
+	 * Create a Stack with default values. Stack starts empty with maximum possible size
+	 */
+	public ArrayStack() {
+		this(Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Create a Stack with default values and a predetermined maximum size
+	 * @param size the intended maximum size of the Stack
+	 */
+	public ArrayStack(int size) {
+		MAX_SIZE = size;
+		data = new Object[Math.max(Math.min(size, DEFAULT_CAPACITY), 1)];
+		count = 0;
+	}
+	
+	/**
+	 * Create a Stack with a single data point. Stack will be set to the maximum possible size
+	 * @param data the Object to be entered into the Stack
+	 */
+	public ArrayStack(T data) {
+		this(data, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Create a Stack with a single data point and indicated maximum size
+	 * @param data the Object to be entered into the Stack
+	 * @param size the intended maximum size of the Stack
+	 */
+	public ArrayStack(T data, int size) {
+		this(size);
+		push(data);
+	}
+	
+	/**
+	 * Determine if the Stack is empty (containing no data)
+	 * @return true if the Stack is empty or false if the Stack contains data
+	 */
+	@Override
+	public boolean isEmpty() {
+		return count == 0;
+	}
+	
+	/**
+	 * Determine if the Stack is full (cannot admit more data)
+	 * @return true if the Stack is full, or false if the Stack is not full
+	 */
+	@Override
+	public boolean isFull() {
+		return count == MAX_SIZE;
+	}
+	
+	/**
+	 * Remove the top item from the Stack
+	 * @return the Object at the top of the Stack
+	 * @throws StackUnderflowException if the Stack is empty
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public T pop() throws StackUnderflowException {
+		//If the Stack is empty, throw Exception
+		if (isEmpty()) throw new StackUnderflowException("The stack is empty. The operation may not be completed");
+		
+		//Clear the slot so the Stack does not hold on to the removed Object
+		T returnData = (T) data[--count];
+		data[count] = null;
+		return returnData;
+	}
+	
+	/**
+	 * Retrieve the Object data from the top of the stack without removing it
+	 * @return the Object at the top of the Stack
+	 * @throws StackUnderflowException if the Stack is empty
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public T peek() throws StackUnderflowException {
+		//If the Stack is empty, throw Exception
+		if (isEmpty()) throw new StackUnderflowException("The stack is empty. The operation may not be completed");
+		
+		return (T) data[count - 1];
+	}
+	
+	/**
+	 * Determine the current size of the Stack
+	 * @return the current size of the Stack
+	 */
+	@Override
+	public int size() {
+		return count;
+	}
+	
+	/**
+	 * Add an Object to the top of the Stack
+	 * @param e the Object to be added to the Stack
+	 * @throws StackOverflowException if there is no more room in the Stack (Stack is full)
+	 */
+	@Override
+	public boolean push(T e) throws StackOverflowException {
+		//If the stack is full, throw Exception
+		if (isFull()) throw new StackOverflowException("The stack is full. The operation may not be completed");
+		
+		//Grow the array if needed, but never past the maximum size
+		if (count == data.length) {
+			data = Arrays.copyOf(data, (int) Math.min((long) count * 2, MAX_SIZE));
+		}
+		data[count++] = e;
+		return true;
+	}
+	
+	/**
+	 * Create a single String containing all data contained in the stack, starting at the bottom of the Stack.
+	 * Each Object's data will be separated by the indicated delimiter String
+	 * @param delimiter the String used to separate each Object's data on return
+	 * @return a single String of all Stack object data
+	 */
+	@Override
+	public String toString(String delimiter) {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			if (i > 0) builder.append(delimiter);
+			builder.append(data[i]);
+		}
+		return builder.toString();
+	}
+	
+	/**
+	 * Create a single String containing all data contained in the stack, starting with the bottom item
+	 * @return a single String of all Stack object data
+	 */
+	@Override
+	public String toString() {
+		return toString("");
+	}
+	
+	/**
+	 * Populate a Stack with data contained in an existing Arraylist.
+	 * The first item in the ArrayList will be the first entered in the Stack (at the bottom)
+	 * @param list the ArrayList of data to add to the Stack
+	 * @throws StackOverflowException if the Stack fills before the list is exhausted
+	 */
+	@Override
+	public void fill(ArrayList<T> list) throws StackOverflowException {
+		for (int i = 0; i < list.size(); i++) {
+			push(list.get(i));
+		}
+	}
+}
@@ -0,0 +1,114 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * A read-only CharSequence view of ASCII text held in a byte array or ByteBuffer, so expressions that
+ * arrive as bytes can be tokenized in place without first being decoded into a String.
+ *
+ * Each byte is one character. Most expressions are pure ASCII, but variables may be any letters, so UTF-8
+ * text may hold multi-byte characters. The bytes are checked once when a view is created; text that is not
+ * pure ASCII is instead decoded as UTF-8 into a String, so it is processed exactly as the same String would
+ * be, and any malformed byte sequence becomes U+FFFD, which the lexer rejects as an invalid character.
+ * Offsets reported in errors are character offsets in the text, which for ASCII are also byte offsets.
+ *
+ * A view does not copy the bytes, so they must not change while it is in use.
+ *
+ * @author Mike Meyers
+ *
+ */
+final class AsciiCharSequence implements CharSequence {
+
+	private final byte[] array; //The bytes, or null if they are read from buffer
+	private final ByteBuffer buffer; //The bytes of a buffer with no accessible array, or null
+	private final int offset; //Index of the first byte of the view
+	private final int length; //Number of bytes in the view
+
+	/**
+	 * Create a view of part of a byte array, or decode it as UTF-8 if the bytes are not all ASCII
+	 * @param bytes the array holding the text
+	 * @param offset index of the first byte of the text
+	 * @param length number of bytes in the text
+	 * @return the text as a CharSequence
+	 * @throws IndexOutOfBoundsException if the range is outside the array
+	 */
+	static CharSequence of(byte[] bytes, int offset, int length) {
+		Objects.checkFromIndexSize(offset, length, bytes.length);
+		for (int i = offset, end = offset + length; i < end; i++) {
+			if (bytes[i] < 0) return new String(bytes, offset, length, StandardCharsets.UTF_8);
+		}
+		return new AsciiCharSequence(bytes, null, offset, length);
+	}
+
+	/**
+	 * Create a view of the bytes from a buffer's position to its limit, or decode them as UTF-8 if they are
+	 * not all ASCII. The buffer's position is not changed. Heap buffers are read straight from their
+	 * backing array
+	 * @param buffer the buffer holding the text
+	 * @return the text as a CharSequence
+	 */
+	static CharSequence of(ByteBuffer buffer) {
+		if (buffer.hasArray()) return of(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+
+		for (int i = buffer.position(), end = buffer.limit(); i < end; i++) {
+			if (buffer.get(i) < 0) return StandardCharsets.UTF_8.decode(buffer.duplicate()).toString();
+		}
+		return new AsciiCharSequence(null, buffer, buffer.position(), buffer.remaining());
+	}
+
+	/**
+	 * Create a view sharing a range of bytes. The bytes must already be known to be ASCII
+	 */
+	private AsciiCharSequence(byte[] array, ByteBuffer buffer, int offset, int length) {
+		this.array = array;
+		this.buffer = buffer;
+		this.offset = offset;
+		this.length = length;
+	}
+
+	/**
+	 * Determine the length of the text
+	 * @return the number of bytes in the view
+	 */
+	@Override
+	public int length() {
+		return length;
+	}
+
+	/**
+	 * Read one character
+	 * @param index offset of the character in the view
+	 * @return the ASCII character
+	 * @throws IndexOutOfBoundsException if the index is outside the view
+	 */
+	@Override
+	public char charAt(int index) {
+		Objects.checkIndex(index, length);
+		return (char) ((array != null) ? array[offset + index] : buffer.get(offset + index));
+	}
+
+	/**
+	 * Create a view of part of this view, sharing its bytes
+	 * @param start offset of the first character
+	 * @param end offset one past the last character
+	 * @return the view of the range
+	 * @throws IndexOutOfBoundsException if the range is outside the view
+	 */
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		Objects.checkFromToIndex(start, end, length);
+		return new AsciiCharSequence(array, buffer, offset + start, end - start);
+	}
+
+	/**
+	 * Copy the text into a String
+	 * @return the text
+	 */
+	@Override
+	public String toString() {
+		if (array != null) return new String(array, offset, length, StandardCharsets.ISO_8859_1);
+		char[] chars = new char[length];
+		for (int i = 0; i < length; i++) chars[i] = charAt(i);
+		return new String(chars);
+	}
+}
@@ -0,0 +1,250 @@
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded, thread-safe Queue that can make producers wait for space and consumers wait for data.
+ *
+ * The Queue keeps MyQueue's MAX_SIZE semantics: the QueueInterface methods never wait, so enqueue on a
+ * full Queue throws QueueOverflowException and dequeue on an empty one throws QueueUnderflowException.
+ * The put/offer and take/poll methods wait instead, which is what lets a bounded Queue push back on
+ * producers that outpace their consumers. Data is held in an ArrayQueue guarded by a ReentrantLock,
+ * which, unlike synchronized, does not pin virtual threads to their carrier while they wait.
+ *
+ * @author Mike Meyers
+ *
+ * @param <T> data type
+ */
+public class BlockingArrayQueue<T> implements QueueInterface<T> {
+
+	private final ArrayQueue<T> queue; //The data, in line order
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition(); //Signaled when data is added
+	private final Condition notFull = lock.newCondition(); //Signaled when data is removed
+
+	/**
+	 * Create an empty Queue with an indicated maximum size
+	 * @param maxVal the maximum size of the Queue
+	 */
+	public BlockingArrayQueue(int maxVal) {
+		queue = new ArrayQueue<>(maxVal);
+	}
+
+	/**
+	 * Create an empty Queue with no practical maximum size
+	 */
+	public BlockingArrayQueue() {
+		this(Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Add an element to the back of the Queue, waiting for space if the Queue is full
+	 * @param e the element to add
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 */
+	public void put(T e) throws InterruptedException {
+		lock.lockInterruptibly();
+		try {
+			while (queue.isFull()) notFull.await();
+			queue.enqueue(e);
+			notEmpty.signal();
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Add an element to the back of the Queue, waiting up to a time limit for space if the Queue is full
+	 * @param e the element to add
+	 * @param timeout the longest time to wait
+	 * @param unit the unit of the timeout
+	 * @return true if the element was added, false if the Queue stayed full
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 */
+	public boolean offer(T e, long timeout, TimeUnit unit) throws InterruptedException {
+		long remaining = unit.toNanos(timeout);
+		lock.lockInterruptibly();
+		try {
+			while (queue.isFull()) {
+				if (remaining <= 0) return false;
+				remaining = notFull.awaitNanos(remaining);
+			}
+			queue.enqueue(e);
+			notEmpty.signal();
+			return true;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Remove and return the element at the front of the Queue, waiting for one if the Queue is empty
+	 * @return the element at the front of the Queue
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 */
+	public T take() throws InterruptedException {
+		lock.lockInterruptibly();
+		try {
+			while (queue.isEmpty()) notEmpty.await();
+			T e = queue.dequeue();
+			notFull.signal();
+			return e;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Remove and return the element at the front of the Queue, waiting up to a time limit for one
+	 * @param timeout the longest time to wait
+	 * @param unit the unit of the timeout
+	 * @return the element at the front of the Queue, or null if the Queue stayed empty
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 */
+	public T poll(long timeout, TimeUnit unit) throws InterruptedException {
+		long remaining = unit.toNanos(timeout);
+		lock.lockInterruptibly();
+		try {
+			while (queue.isEmpty()) {
+				if (remaining <= 0) return null;
+				remaining = notEmpty.awaitNanos(remaining);
+			}
+			T e = queue.dequeue();
+			notFull.signal();
+			return e;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Determine if the Queue is empty (not containing data)
+	 * @return true if the Queue is empty, false otherwise
+	 */
+	@Override
+	public boolean isEmpty() {
+		lock.lock();
+		try {
+			return queue.isEmpty();
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Determine if the Queue is full
+	 * @return true if the Queue is full, false otherwise
+	 */
+	@Override
+	public boolean isFull() {
+		lock.lock();
+		try {
+			return queue.isFull();
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Remove and return the element at the front of the Queue without waiting
+	 * @return the element at the front of the Queue
+	 * @throws QueueUnderflowException if the Queue is empty
+	 */
+	@Override
+	public T dequeue() throws QueueUnderflowException {
+		lock.lock();
+		try {
+			T e = queue.dequeue();
+			notFull.signal();
+			return e;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Determine the number of elements in the Queue
+	 * @return the number of elements in the Queue
+	 */
+	@Override
+	public int size() {
+		lock.lock();
+		try {
+			return queue.size();
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Add an element to the back of the Queue without waiting
+	 * @param e the element to add
+	 * @return true if the element was added
+	 * @throws QueueOverflowException if the Queue is full
+	 */
+	@Override
+	public boolean enqueue(T e) throws QueueOverflowException {
+		lock.lock();
+		try {
+			queue.enqueue(e);
+			notEmpty.signal();
+			return true;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Retrieve all data stored in the Queue as a single String
+	 * @param delimiter the String to be used to separate the data retrieved from each object
+	 * @return the data from each object in the Queue, delimited by the indicated String
+	 */
+	@Override
+	public String toString(String delimiter) {
+		lock.lock();
+		try {
+			return queue.toString(delimiter);
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Return a String representation of the data in each item of the Queue
+	 * @return a single String representing the entire Queue
+	 */
+	@Override
+	public String toString() {
+		return toString("");
+	}
+
+	/**
+	 * Fill the Queue with elements from an ArrayList without waiting
+	 * @param list the ArrayList of elements to be added to the Queue
+	 * @throws QueueOverflowException if the Queue fills before the list is exhausted
+	 */
+	@Override
+	public void fill(ArrayList<T> list) {
+		lock.lock();
+		try {
+			for (int i = 0; i < list.size(); i++) {
+				queue.enqueue(list.get(i));
+				notEmpty.signal();
+			}
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+}
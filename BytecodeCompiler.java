@@ -0,0 +1,377 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.ref.Cleaner;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Turn compiled expressions into Java classes, so the JIT compiler can inline their arithmetic and keep
+ * intermediate values in registers rather than interpreting a program one opcode at a time.
+ *
+ * Each expression becomes a hidden class whose evaluate method is the expression's program translated
+ * opcode for opcode into bytecode: constants are loaded from the class's constant pool, variables are read
+ * from the bindings array, and values reused by RECALL are kept in local variables. The code has no
+ * branches, so the class file needs no stack map frames and is written directly.
+ *
+ * Generated classes are not bound to their class loader, so each one is unloaded once its function is
+ * no longer reachable. The number of live classes is capped; beyond the cap, or for programs too large
+ * for the JIT compiler to compile, the CompiledExpression itself is returned and interprets its program
+ * as usual. Either way the function returns exactly the values CompiledExpression.evaluate does.
+ *
+ * A compiler may be shared between threads.
+ *
+ * @author Mike Meyers
+ *
+ */
+public final class BytecodeCompiler {
+
+	private static final int DEFAULT_MAX_CLASSES = 1024; //Live generated classes allowed by default
+	private static final int MAX_CODE_LENGTH = 8000; //Bytecode size HotSpot will still JIT-compile (HugeMethodLimit)
+	private static final Cleaner CLEANER = Cleaner.create(); //Notices when generated functions are unreachable
+
+	private final int maxClasses; //Most generated classes that may be live at once
+	private final AtomicInteger liveClasses = new AtomicInteger(); //Generated classes whose functions are reachable
+
+	/**
+	 * Create a compiler that allows up to 1024 live generated classes
+	 */
+	public BytecodeCompiler() {
+		this(DEFAULT_MAX_CLASSES);
+	}
+
+	/**
+	 * Create a compiler that allows up to a given number of live generated classes
+	 * @param maxClasses the most generated classes that may be live at once
+	 */
+	public BytecodeCompiler(int maxClasses) {
+		this.maxClasses = maxClasses;
+	}
+
+	/**
+	 * Parse, optimize and generate a class for an infix expression
+	 * @param infix the infix-notated expression to compile
+	 * @return the expression as a function of its variable values, indexed by slot
+	 * @throws InvalidNotationFormatExceptionV2 if the input is found to be improperly formatted
+	 */
+	public ExpressionFunction compile(String infix) throws InvalidNotationFormatExceptionV2 {
+		return compile(new ExpressionOptimizer().compile(infix));
+	}
+
+	/**
+	 * Generate a class for a compiled expression. The generated function does not check its bindings:
+	 * an array without a value for every slot causes an ArrayIndexOutOfBoundsException
+	 * @param expression the compiled expression
+	 * @return a generated function, or the expression itself if the class cap is reached or the program is too large
+	 */
+	public ExpressionFunction compile(CompiledExpression expression) {
+		byte[] code = translate(expression);
+		if (code == null) return expression;
+
+		//Reserve a place under the cap before defining anything
+		int live;
+		do {
+			live = liveClasses.get();
+			if (live >= maxClasses) return expression;
+		} while (!liveClasses.compareAndSet(live, live + 1));
+
+		try {
+			byte[] classFile = classFile(code, expression.constants());
+			MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(classFile, true);
+			ExpressionFunction function = (ExpressionFunction) lookup.findConstructor(lookup.lookupClass(),
+					MethodType.methodType(void.class)).invoke();
+			CLEANER.register(function, liveClasses::decrementAndGet);
+			return function;
+		}
+		catch (Throwable e) {
+			liveClasses.decrementAndGet();
+			throw new IllegalStateException("Could not generate a class for " + expression.getSource(), e);
+		}
+	}
+
+	/**
+	 * Determine how many generated classes are still reachable. Counts fall as unreachable functions are
+	 * collected, so the figure may lag behind the program's actual use
+	 * @return the number of live generated classes
+	 */
+	public int getLiveClasses() {
+		return liveClasses.get();
+	}
+
+	/**
+	 * Determine how many generated classes may be live at once
+	 * @return the class cap
+	 */
+	public int getMaxClasses() {
+		return maxClasses;
+	}
+
+	//Instruction and constant pool entries used by the generated classes
+	private static final int ALOAD_0 = 0x2a, ALOAD_1 = 0x2b, ICONST_0 = 0x03, BIPUSH = 0x10, SIPUSH = 0x11;
+	private static final int LDC2_W = 0x14, DALOAD = 0x31, DLOAD = 0x18, DSTORE = 0x39, DUP2 = 0x5c, WIDE = 0xc4;
+	private static final int DADD = 0x63, DSUB = 0x67, DMUL = 0x6b, DDIV = 0x6f, DRETURN = 0xaf, RETURN = 0xb1;
+	private static final int INVOKESPECIAL = 0xb7, INVOKESTATIC = 0xb8;
+
+	/**
+	 * Translate a program into the body of the evaluate method. Constant pool indices are only known once
+	 * the pool is built, so each PUSH is written with its constant's index and the Math.pow call with a
+	 * placeholder, and classFile() patches both
+	 * @param expression the compiled expression
+	 * @return the instructions, or null if the method would be too large to be JIT-compiled
+	 */
+	private static byte[] translate(CompiledExpression expression) {
+		int[] program = expression.code();
+		ByteArrayOutputStream out = new ByteArrayOutputStream(program.length * 2);
+		for (int pc = 0; pc < program.length; pc++) {
+			switch (program[pc]) {
+				case CompiledExpression.PUSH :
+					out.write(LDC2_W);
+					writeShort(out, program[++pc]);
+					break;
+				case CompiledExpression.LOAD :
+					out.write(ALOAD_1);
+					int slot = program[++pc];
+					if (slot <= 5) out.write(ICONST_0 + slot);
+					else if (slot <= Byte.MAX_VALUE) {
+						out.write(BIPUSH);
+						out.write(slot);
+					}
+					else {
+						out.write(SIPUSH);
+						writeShort(out, slot);
+					}
+					out.write(DALOAD);
+					break;
+				case CompiledExpression.STORE :
+					out.write(DUP2);
+					local(out, DSTORE, program[++pc]);
+					break;
+				case CompiledExpression.RECALL :
+					local(out, DLOAD, program[++pc]);
+					break;
+				case CompiledExpression.ADD : out.write(DADD); break;
+				case CompiledExpression.SUBTRACT : out.write(DSUB); break;
+				case CompiledExpression.MULTIPLY : out.write(DMUL); break;
+				case CompiledExpression.DIVIDE : out.write(DDIV); break;
+				default :
+					out.write(INVOKESTATIC);
+					writeShort(out, 0);
+					break;
+			}
+			if (out.size() > MAX_CODE_LENGTH) return null;
+		}
+		out.write(DRETURN);
+		return out.toByteArray();
+	}
+
+	/**
+	 * Write a load or store of a local variable. Stored values use two local slots each, after
+	 * this and the bindings array
+	 */
+	private static void local(ByteArrayOutputStream out, int instruction, int position) {
+		int index = 2 + 2 * position;
+		if (index > 255) {
+			out.write(WIDE);
+			out.write(instruction);
+			writeShort(out, index);
+		}
+		else {
+			out.write(instruction);
+			out.write(index);
+		}
+	}
+
+	private static void writeShort(ByteArrayOutputStream out, int value) {
+		out.write(value >>> 8);
+		out.write(value);
+	}
+
+	/**
+	 * Assemble the class file of a generated function
+	 * @param code the evaluate method's instructions from translate()
+	 * @param constants the values of the program's constants
+	 * @return the class file
+	 */
+	private static byte[] classFile(byte[] code, double[] constants) throws IOException {
+		ConstantPool pool = new ConstantPool();
+		int thisClass = pool.classRef("GeneratedExpressionFunction");
+		int objectClass = pool.classRef("java/lang/Object");
+		int functionInterface = pool.classRef("ExpressionFunction");
+		int objectInit = pool.methodRef(objectClass, "<init>", "()V");
+		int init = pool.utf8("<init>");
+		int initType = pool.utf8("()V");
+		int evaluate = pool.utf8("evaluate");
+		int evaluateType = pool.utf8("([D)D");
+		int codeAttribute = pool.utf8("Code");
+		int pow = 0;
+		int[] constantEntries = new int[constants.length];
+		for (int i = 0; i < constants.length; i++) constantEntries[i] = pool.doubleConstant(constants[i]);
+
+		//Replace the placeholder operands with constant pool indices, and work out the stack and locals needed
+		int words = 0;
+		int maxStack = 0;
+		int maxLocal = 0;
+		for (int i = 0; i < code.length - 1; ) {
+			int op = code[i] & 0xFF;
+			switch (op) {
+				case LDC2_W :
+					int entry = constantEntries[((code[i + 1] & 0xFF) << 8) | (code[i + 2] & 0xFF)];
+					code[i + 1] = (byte) (entry >>> 8);
+					code[i + 2] = (byte) entry;
+					words += 2;
+					i += 3;
+					break;
+				case ALOAD_1 :
+					//The array reference and index are replaced by the double they select
+					maxStack = Math.max(maxStack, words + 2);
+					words += 2;
+					int index = code[i + 1] & 0xFF;
+					i += (index == BIPUSH) ? 3 : (index == SIPUSH) ? 4 : 2;
+					i++; //DALOAD
+					break;
+				case DUP2 :
+					maxStack = Math.max(maxStack, words + 2);
+					i++;
+					break;
+				case WIDE :
+					maxLocal = Math.max(maxLocal, (((code[i + 2] & 0xFF) << 8) | (code[i + 3] & 0xFF)) + 2);
+					if ((code[i + 1] & 0xFF) == DLOAD) words += 2;
+					i += 4;
+					break;
+				case DSTORE :
+				case DLOAD :
+					maxLocal = Math.max(maxLocal, (code[i + 1] & 0xFF) + 2);
+					if (op == DLOAD) words += 2;
+					i += 2;
+					break;
+				case INVOKESTATIC :
+					if (pow == 0) pow = pool.methodRef(pool.classRef("java/lang/Math"), "pow", "(DD)D");
+					code[i + 1] = (byte) (pow >>> 8);
+					code[i + 2] = (byte) pow;
+					words -= 2;
+					i += 3;
+					break;
+				default : //Arithmetic replaces two doubles with one
+					words -= 2;
+					i++;
+					break;
+			}
+			maxStack = Math.max(maxStack, words);
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(code.length + 256);
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(0xCAFEBABE);
+		out.writeShort(0); //Minor version
+		out.writeShort(52); //Java 8 class files need no stack map frames for branch-free code
+		pool.write(out);
+		out.writeShort(0x0001 | 0x0010 | 0x0020); //public final super
+		out.writeShort(thisClass);
+		out.writeShort(objectClass);
+		out.writeShort(1);
+		out.writeShort(functionInterface);
+		out.writeShort(0); //No fields
+		out.writeShort(2); //Constructor and evaluate
+
+		//public GeneratedExpressionFunction() { super(); }
+		out.writeShort(0x0001);
+		out.writeShort(init);
+		out.writeShort(initType);
+		out.writeShort(1);
+		byte[] constructor = {(byte) ALOAD_0, (byte) INVOKESPECIAL, (byte) (objectInit >>> 8), (byte) objectInit, (byte) RETURN};
+		writeCode(out, codeAttribute, 1, 1, constructor);
+
+		//public double evaluate(double[] bindings) { ...the program... }
+		out.writeShort(0x0001);
+		out.writeShort(evaluate);
+		out.writeShort(evaluateType);
+		out.writeShort(1);
+		writeCode(out, codeAttribute, Math.max(maxStack, 2), Math.max(maxLocal, 2), code);
+
+		out.writeShort(0); //No class attributes
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Write a method's Code attribute
+	 */
+	private static void writeCode(DataOutputStream out, int name, int maxStack, int maxLocals, byte[] code) throws IOException {
+		out.writeShort(name);
+		out.writeInt(12 + code.length);
+		out.writeShort(maxStack);
+		out.writeShort(maxLocals);
+		out.writeInt(code.length);
+		out.write(code);
+		out.writeShort(0); //No exception handlers
+		out.writeShort(0); //No attributes
+	}
+
+	/**
+	 * The constant pool of a class being generated. Entries are shared when added twice
+	 * @author Mike Meyers
+	 *
+	 */
+	private static final class ConstantPool {
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		private final DataOutputStream out = new DataOutputStream(bytes);
+		private final HashMap<Object, Integer> entries = new HashMap<>();
+		private int next = 1; //Index of the next entry; doubles take two
+
+		int utf8(String text) throws IOException {
+			Integer existing = entries.get(text);
+			if (existing != null) return existing;
+			out.writeByte(1);
+			out.writeUTF(text);
+			return add(text, 1);
+		}
+
+		int classRef(String name) throws IOException {
+			String key = "class " + name;
+			Integer existing = entries.get(key);
+			if (existing != null) return existing;
+			int nameIndex = utf8(name);
+			out.writeByte(7);
+			out.writeShort(nameIndex);
+			return add(key, 1);
+		}
+
+		int methodRef(int owner, String name, String type) throws IOException {
+			int nameIndex = utf8(name);
+			int typeIndex = utf8(type);
+			out.writeByte(12); //NameAndType
+			out.writeShort(nameIndex);
+			out.writeShort(typeIndex);
+			int nameAndType = next++;
+			out.writeByte(10); //Methodref
+			out.writeShort(owner);
+			out.writeShort(nameAndType);
+			return next++;
+		}
+
+		int doubleConstant(double value) throws IOException {
+			//Constants are matched bit for bit, so -0.0 and every NaN keep their exact value
+			Long key = Double.doubleToRawLongBits(value);
+			Integer existing = entries.get(key);
+			if (existing != null) return existing;
+			out.writeByte(6);
+			out.writeLong(key);
+			return add(key, 2);
+		}
+
+		private int add(Object key, int size) {
+			int index = next;
+			entries.put(key, index);
+			next += size;
+			return index;
+		}
+
+		void write(DataOutputStream target) throws IOException {
+			out.flush();
+			target.writeShort(next);
+			bytes.writeTo(target);
+		}
+	}
+}
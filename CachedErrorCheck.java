@@ -0,0 +1,144 @@
+import java.util.Random;
+
+/**
+ * Self-check that installing a CompiledExpressionCache never changes what evaluateInfixExpression and
+ * evaluatePostfixExpression report.
+ *
+ * Every expression is evaluated three times: with no cache, with a new cache (a miss, which compiles),
+ * and again with the same cache (a hit if the expression compiled). Each run must return the same value
+ * bit for bit, or fail with the same error code at the same offset. The expressions are one or more
+ * examples of every error the parser can find, with and without a variable ahead of the problem, plus
+ * random expressions over numbers and variables with one character inserted, deleted or replaced.
+ *
+ * Prints the first mismatches and exits with status 1 if there are any.
+ *
+ * Usage: java CachedErrorCheck [--random n] [--seed n]
+ *
+ * @author Mike Meyers
+ *
+ */
+public class CachedErrorCheck {
+
+	//Infix expressions with every kind of error, and valid ones with and without variables
+	private static final String[] INFIX_CASES = {
+		"", "   ", "1 + 2", "a", "a + 3", "1 + a", "(a)", "2 ^ b ^ a",
+		"1 + + 3", "a + + 3", "+ 1", "+ a", "1 +", "a +", "1 + (* 2)", "a * (+ 2)", "1 2", "a 3", "3 a",
+		"(1 + 2", "(a + 2", "1 + 2)", "a + 2)", "(1 + 2]", "[a + 2)", "()", "(a)()", "1 ( 2 )", "a ( 2 )",
+		"1..2 + 3", "a + 1..2", "1..2 + a", ". + 1", "a + .", "1 # 2", "a # 2", "1 # a", "a $ 2",
+	};
+
+	//Postfix expressions with every kind of error, and valid ones with and without variables
+	private static final String[] POSTFIX_CASES = {
+		"", "   ", "1 2 +", "a", "a 3 +", "1 a +", "2 b a ^ ^",
+		"+", "3 +", "a +", "3 a", "a 3", "1 2", "1 2 3 +", "1 2 + 3 4 *", "a 3 + +", "1 2 + a 4 *",
+		"1 2 + +", "(1 2 +)", "a ( 2 +", "1 [ 2 +", "1..2 3 +", "a 1..2 +", "1..2 a +", ". 1 +", "1 2 #", "a 2 #",
+		"1 a $",
+	};
+
+	private static final int MAX_REPORTED = 20; //Mismatches printed before the rest are only counted
+
+	private long checked = 0; //Expressions compared
+	private long mismatches = 0; //Expressions whose outcomes differed
+
+	public static void main(String[] args) {
+		int random = 20_000;
+		long seed = 1;
+		for (int i = 0; i < args.length; i++) {
+			switch (args[i]) {
+				case "--random" : random = Integer.parseInt(args[++i]); break;
+				case "--seed" : seed = Long.parseLong(args[++i]); break;
+				default :
+					System.err.println("Usage: java CachedErrorCheck [--random n] [--seed n]");
+					System.exit(1);
+			}
+		}
+
+		CachedErrorCheck check = new CachedErrorCheck();
+		CompiledExpressionCache previous = NotationV2.getExpressionCache();
+		try {
+			for (String expression : INFIX_CASES) check.compare(expression, true);
+			for (String expression : POSTFIX_CASES) check.compare(expression, false);
+			Random generator = new Random(seed);
+			for (int i = 0; i < random; i++) {
+				check.compare(mutate(ExpressionSamples.infixOfSize(3 + generator.nextInt(12), generator), generator), true);
+				check.compare(mutate(ExpressionSamples.postfixOfSize(3 + generator.nextInt(12), generator), generator), false);
+			}
+		}
+		finally {
+			NotationV2.setExpressionCache(previous);
+		}
+
+		System.out.println("CachedErrorCheck: " + check.checked + " expressions, " + check.mismatches + " mismatches");
+		if (check.mismatches > 0) System.exit(1);
+	}
+
+	/**
+	 * Swap some operands of a sample expression for variables, then insert, delete or replace one
+	 * character, so most results are invalid in some way and some have a variable ahead of the problem
+	 * @param expression a valid sample expression
+	 * @param random the source of choices
+	 * @return the changed expression
+	 */
+	private static String mutate(String expression, Random random) {
+		StringBuilder builder = new StringBuilder(expression);
+		for (int i = 0; i < builder.length(); i++) {
+			boolean operandStart = Character.isDigit(builder.charAt(i)) && (i == 0 || !Character.isDigit(builder.charAt(i - 1)));
+			if (operandStart && random.nextInt(6) == 0) builder.setCharAt(i, (char) ('a' + random.nextInt(3)));
+		}
+
+		String characters = "0123456789.+-*/^()[]{} ab#";
+		int at = random.nextInt(builder.length() + 1);
+		switch (random.nextInt(4)) {
+			case 0 : builder.insert(at, characters.charAt(random.nextInt(characters.length()))); break;
+			case 1 : if (at < builder.length()) builder.deleteCharAt(at); break;
+			case 2 : if (at < builder.length()) builder.setCharAt(at, characters.charAt(random.nextInt(characters.length()))); break;
+			default : break; //Leave the expression valid, apart from any variables
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Evaluate an expression without a cache, with a new cache and with the same cache again, and
+	 * compare the outcomes
+	 * @param expression the expression
+	 * @param infix true if the expression is infix, false if postfix
+	 */
+	private void compare(String expression, boolean infix) {
+		NotationV2.setExpressionCache(null);
+		String expected = outcome(expression, infix);
+
+		NotationV2.setExpressionCache(new CompiledExpressionCache(4));
+		String miss = outcome(expression, infix);
+		String hit = outcome(expression, infix);
+
+		checked++;
+		String notation = infix ? "infix" : "postfix";
+		if (!miss.equals(expected)) mismatch(notation + " \"" + expression + "\": cache miss " + miss + ", expected " + expected);
+		else if (!hit.equals(expected)) mismatch(notation + " \"" + expression + "\": cache hit " + hit + ", expected " + expected);
+	}
+
+	/**
+	 * Evaluate an expression with whatever cache is installed
+	 * @param expression the expression
+	 * @param infix true if the expression is infix, false if postfix
+	 * @return the value's bits, or the error code and offset
+	 */
+	private static String outcome(String expression, boolean infix) {
+		try {
+			double value = infix ? NotationV2.evaluateInfixExpression(expression) : NotationV2.evaluatePostfixExpression(expression);
+			return "value " + Long.toHexString(Double.doubleToRawLongBits(value));
+		}
+		catch (InvalidNotationFormatExceptionV2 e) {
+			return "error " + e.getError() + " at " + e.getPosition();
+		}
+	}
+
+	/**
+	 * Count a mismatch, printing it if few have been printed so far
+	 * @param description what differed
+	 */
+	private void mismatch(String description) {
+		if (mismatches < MAX_REPORTED) System.out.println("MISMATCH " + description);
+		mismatches++;
+	}
+}
@@ -0,0 +1,83 @@
+import java.util.Arrays;
+
+/**
+ * A Stack of primitive chars backed by a growable array. Used for the operators and braces
+ * of the infix parser, which are stored as their character code. Characters are never boxed
+ * and no objects are created per push.
+ * 
+ * @author Mike Meyers
+ *
+ */
+public class CharStack {
+	
+	private char[] data; //The values in the Stack, bottom first
+	private int size; //The number of values in the Stack
+	
+	/**
+	 * Create an empty Stack with a default starting capacity
+	 */
+	public CharStack() {
+		this(16);
+	}
+	
+	/**
+	 * Create an empty Stack with room for a given number of values before it must grow
+	 * @param initialCapacity the starting capacity of the Stack
+	 */
+	public CharStack(int initialCapacity) {
+		data = new char[Math.max(initialCapacity, 1)];
+		size = 0;
+	}
+	
+	/**
+	 * Determine if the Stack is empty
+	 * @return true if the Stack holds no values, false otherwise
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	
+	/**
+	 * Determine the current size of the Stack
+	 * @return the number of values in the Stack
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Add a value to the top of the Stack, growing the Stack if it is out of room
+	 * @param value the value to be added
+	 */
+	public void push(char value) {
+		if (size == data.length) data = Arrays.copyOf(data, size * 2);
+		data[size++] = value;
+	}
+	
+	/**
+	 * Remove the value at the top of the Stack
+	 * @return the value that was at the top of the Stack
+	 * @throws StackUnderflowException if the Stack is empty
+	 */
+	public char pop() throws StackUnderflowException {
+		if (size == 0) throw new StackUnderflowException("The stack is empty. The operation may not be completed");
+		return data[--size];
+	}
+	
+	/**
+	 * Retrieve the value at the top of the Stack without removing it
+	 * @return the value at the top of the Stack
+	 * @throws StackUnderflowException if the Stack is empty
+	 */
+	public char peek() throws StackUnderflowException {
+		if (size == 0) throw new StackUnderflowException("The stack is empty. The operation may not be completed");
+		return data[size - 1];
+	}
+	
+	/**
+	 * Remove every value from the Stack, keeping its capacity for reuse
+	 */
+	public void clear() {
+		size = 0;
+	}
+}
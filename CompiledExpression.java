@@ -0,0 +1,237 @@
+/**
+ * An infix or postfix expression that has been validated and parsed once, ready to be evaluated any number of times.
+ *
+ * The expression is stored as a flat postfix program: an array of opcodes, where each PUSH opcode is
+ * followed by the index of its value in an array of constants. Evaluation is a single loop over the
+ * program with no parsing and no allocation. CompiledExpression objects are immutable and may be
+ * shared between threads.
+ * 
+ * Variables (operands made of letters) are given a slot number when the expression is compiled, in
+ * order of first appearance. Values are supplied at evaluation time as a double array indexed by slot,
+ * so one compiled expression can be evaluated against any number of rows without looking names up.
+ *
+ * @author Mike Meyers
+ * @version 2.0
+ *
+ */
+public final class CompiledExpression implements ExpressionFunction {
+
+	static final int PUSH = 0; //Push the constant whose index follows
+	static final int ADD = 1;
+	static final int SUBTRACT = 2;
+	static final int MULTIPLY = 3;
+	static final int DIVIDE = 4;
+	static final int POWER = 5;
+	static final int LOAD = 6; //Push the binding whose slot follows
+	static final int STORE = 7; //Copy the top of the stack to the stack position that follows, without popping it
+	static final int RECALL = 8; //Push the value stored at the stack position that follows
+
+	//Per-thread scratch space for the operand stack, so that evaluate() never allocates once warm
+	private static final ThreadLocal<double[]> SCRATCH = ThreadLocal.withInitial(() -> new double[16]);
+
+	private final String source; //The expression the program was compiled from
+	private final int tokens; //The number of tokens in the source
+	private final int[] code; //The opcodes of the program, in postfix order
+	private final double[] constants; //The values pushed by PUSH opcodes
+	private final int maxDepth; //The scratch space the program needs: the deepest the operand stack grows, plus any stored values
+	private final String[] variables; //The variable names, indexed by slot
+	private final int[] variablePositions; //Where each variable first appears in the source, indexed by slot
+
+	/**
+	 * Create a compiled expression from a finished program
+	 * @param source the expression the program was compiled from
+	 * @param tokens the number of tokens in the source
+	 * @param code the opcodes of the program
+	 * @param constants the values pushed by PUSH opcodes
+	 * @param maxDepth the scratch space the program needs: the deepest the operand stack grows, plus any stored values
+	 * @param variables the variable names, indexed by slot
+	 * @param variablePositions the offset in the source where each variable first appears, indexed by slot
+	 */
+	CompiledExpression(String source, int tokens, int[] code, double[] constants, int maxDepth, String[] variables, int[] variablePositions) {
+		this.source = source;
+		this.tokens = tokens;
+		this.code = code;
+		this.constants = constants;
+		this.maxDepth = maxDepth;
+		this.variables = variables;
+		this.variablePositions = variablePositions;
+	}
+
+	/**
+	 * Evaluate an expression that has no variables
+	 * @return the value of the expression
+	 * @throws InvalidNotationFormatExceptionV2 if the expression contains variables
+	 */
+	public double evaluate() throws InvalidNotationFormatExceptionV2 {
+		//Slot 0 is the first variable in the source, the same one evaluating the text would stop at
+		if (variables.length > 0) throw new InvalidNotationFormatExceptionV2(NotationError.UNBOUND_VARIABLE, variablePositions[0]);
+		return evaluate(null);
+	}
+
+	/**
+	 * Evaluate the expression against a set of variable values
+	 * @param bindings the value of each variable, indexed by slot
+	 * @return the value of the expression
+	 * @throws IllegalArgumentException if there are fewer bindings than variables
+	 */
+	@Override
+	public double evaluate(double[] bindings) {
+		double[] stack = SCRATCH.get();
+		if (stack.length < maxDepth) {
+			stack = new double[maxDepth];
+			SCRATCH.set(stack);
+		}
+		return evaluate(bindings, stack);
+	}
+
+	/**
+	 * Evaluate the expression against a set of variable values, using a caller-supplied operand stack
+	 * @param bindings the value of each variable, indexed by slot
+	 * @param stack scratch space for the operand stack, at least getMaxDepth() long
+	 * @return the value of the expression
+	 * @throws IllegalArgumentException if there are fewer bindings than variables
+	 */
+	public double evaluate(double[] bindings, double[] stack) {
+		if (variables.length > 0 && (bindings == null || bindings.length < variables.length)) {
+			throw new IllegalArgumentException("The expression needs a binding for each of its "
+					+ variables.length + " variables");
+		}
+		
+		final int[] code = this.code;
+		final double[] constants = this.constants;
+		int top = -1;
+
+		//The program was checked when it was built, so every operator is guaranteed two operands
+		for (int pc = 0; pc < code.length; pc++) {
+			switch (code[pc]) {
+				case PUSH :
+					stack[++top] = constants[code[++pc]];
+					break;
+				case LOAD :
+					stack[++top] = bindings[code[++pc]];
+					break;
+				case ADD :
+					top--;
+					stack[top] = stack[top] + stack[top + 1];
+					break;
+				case SUBTRACT :
+					top--;
+					stack[top] = stack[top] - stack[top + 1];
+					break;
+				case MULTIPLY :
+					top--;
+					stack[top] = stack[top] * stack[top + 1];
+					break;
+				case DIVIDE :
+					top--;
+					stack[top] = stack[top] / stack[top + 1];
+					break;
+				case POWER :
+					top--;
+					stack[top] = Math.pow(stack[top], stack[top + 1]);
+					break;
+				case STORE :
+					stack[code[++pc]] = stack[top];
+					break;
+				case RECALL :
+					stack[++top] = stack[code[++pc]];
+					break;
+			}
+		}
+
+		return stack[0];
+	}
+
+	/**
+	 * Retrieve the expression this object was compiled from
+	 * @return the original expression
+	 */
+	public String getSource() {
+		return source;
+	}
+
+	/**
+	 * Determine the size of the source, as NotationMetrics records it for a call that was served from a
+	 * cached program rather than parsed
+	 * @return the number of tokens in the expression this object was compiled from
+	 */
+	int tokenCount() {
+		return tokens;
+	}
+
+	/**
+	 * Determine how much operand stack space evaluation needs
+	 * @return the deepest the operand stack grows while evaluating, plus any slots for stored values
+	 */
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	/**
+	 * Determine how many variables the expression uses
+	 * @return the number of variable slots
+	 */
+	public int getVariableCount() {
+		return variables.length;
+	}
+
+	/**
+	 * Retrieve the names of the variables the expression uses
+	 * @return a copy of the variable names, indexed by slot
+	 */
+	public String[] getVariableNames() {
+		return variables.clone();
+	}
+
+	/**
+	 * Find the slot assigned to a variable
+	 * @param name the name of the variable
+	 * @return the variable's slot, or -1 if the expression does not use it
+	 */
+	public int slotOf(String name) {
+		for (int i = 0; i < variables.length; i++) {
+			if (variables[i].equals(name)) return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Retrieve the program itself, for evaluators that run it another way. The array is not copied and must not be modified
+	 * @return the opcodes of the program
+	 */
+	int[] code() {
+		return code;
+	}
+
+	/**
+	 * Retrieve the values pushed by PUSH opcodes. The array is not copied and must not be modified
+	 * @return the constants of the program
+	 */
+	double[] constants() {
+		return constants;
+	}
+
+	/**
+	 * Return the source expression of this compiled expression
+	 * @return the original expression
+	 */
+	@Override
+	public String toString() {
+		return source;
+	}
+
+	/**
+	 * Translate an operator character into its opcode
+	 * @param operator one of + - * / ^
+	 * @return the matching opcode
+	 */
+	static int opcode(char operator) {
+		switch (operator) {
+			case '+' : return ADD;
+			case '-' : return SUBTRACT;
+			case '*' : return MULTIPLY;
+			case '/' : return DIVIDE;
+			default : return POWER;
+		}
+	}
+}
@@ -0,0 +1,357 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of compiled expressions, keyed by their source text.
+ *
+ * When the same expressions are processed again and again, the cache lets NotationV2 skip validating
+ * and parsing them. Entries are evicted by least-recent use (LRU) or least-frequent use (LFU) once the
+ * cache is full. The cache is split into independently locked segments, so threads working on different
+ * expressions rarely contend and there is no global lock. Compilation happens outside any lock, and an
+ * expression is only added (possibly evicting another) once it has compiled successfully, so invalid
+ * input never displaces a valid program.
+ *
+ * Install a cache with NotationV2.setExpressionCache to put it in front of the evaluation methods.
+ *
+ * @author Mike Meyers
+ *
+ */
+public class CompiledExpressionCache {
+
+	/**
+	 * The rule used to choose which entry to evict when the cache is full
+	 */
+	public enum Policy {
+		LRU, //Evict the entry used least recently
+		LFU //Evict the least used of a random sample of entries, with lookup counts that decay over time
+	}
+
+	private final Segment[] segments; //The independently locked parts of the cache
+	private final int maximumSize; //The most entries the cache holds
+	private final Policy policy; //How entries are chosen for eviction
+
+	private static final int EVICTION_SAMPLES = 8; //Entries compared when an LFU segment evicts one
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * Create an LRU cache holding up to a given number of expressions
+	 * @param maximumSize the most entries the cache holds
+	 */
+	public CompiledExpressionCache(int maximumSize) {
+		this(maximumSize, Policy.LRU);
+	}
+
+	/**
+	 * Create a cache holding up to a given number of expressions
+	 * @param maximumSize the most entries the cache holds
+	 * @param policy how entries are chosen for eviction
+	 */
+	public CompiledExpressionCache(int maximumSize, Policy policy) {
+		this(maximumSize, policy, 16);
+	}
+
+	/**
+	 * Create a cache holding up to a given number of expressions, divided into a given number of segments
+	 * @param maximumSize the most entries the cache holds
+	 * @param policy how entries are chosen for eviction
+	 * @param concurrency the number of segments; rounded up to a power of two and capped so each segment holds an entry
+	 */
+	public CompiledExpressionCache(int maximumSize, Policy policy, int concurrency) {
+		if (maximumSize < 1) throw new IllegalArgumentException("The cache must hold at least one entry");
+		this.maximumSize = maximumSize;
+		this.policy = policy;
+
+		int count = 1;
+		while (count < concurrency && count * 2 <= maximumSize) count *= 2;
+		segments = new Segment[count];
+		for (int i = 0; i < count; i++) {
+			//Spread the capacity so the segments add up to exactly maximumSize
+			segments[i] = new Segment(maximumSize / count + (i < maximumSize % count ? 1 : 0));
+		}
+	}
+
+	/**
+	 * Retrieve the compiled form of an infix expression, compiling and caching it on a miss
+	 * @param infix the infix-notated expression
+	 * @return the compiled expression
+	 * @throws InvalidNotationFormatExceptionV2 if the expression is found to be improperly formatted
+	 */
+	public CompiledExpression getInfix(String infix) throws InvalidNotationFormatExceptionV2 {
+		return getInfix(infix, false);
+	}
+
+	/**
+	 * Retrieve the compiled form of an infix expression, compiling and caching it on a miss
+	 * @param infix the infix-notated expression
+	 * @param asEvaluated true to report a failure to compile exactly as NotationV2's evaluators report it,
+	 * at the same offset
+	 * @return the compiled expression
+	 * @throws InvalidNotationFormatExceptionV2 if the expression is found to be improperly formatted
+	 */
+	CompiledExpression getInfix(String infix, boolean asEvaluated) throws InvalidNotationFormatExceptionV2 {
+		Entry entry = lookup(infix);
+		CompiledExpression compiled = (entry == null) ? null : entry.infix;
+		count(compiled != null);
+		if (compiled == null) {
+			//Nothing is added, and so nothing is evicted, unless the expression compiles
+			compiled = NotationV2.compile(infix, asEvaluated);
+			if (entry == null) entry = new Entry();
+			entry.infix = compiled;
+			insert(infix, entry);
+		}
+		return compiled;
+	}
+
+	/**
+	 * Retrieve the compiled form of a postfix expression, compiling and caching it on a miss
+	 * @param postfix the postfix-notated expression
+	 * @return the compiled expression
+	 * @throws InvalidNotationFormatExceptionV2 if the expression is found to be improperly formatted
+	 */
+	public CompiledExpression getPostfix(String postfix) throws InvalidNotationFormatExceptionV2 {
+		return getPostfix(postfix, false);
+	}
+
+	/**
+	 * Retrieve the compiled form of a postfix expression, compiling and caching it on a miss
+	 * @param postfix the postfix-notated expression
+	 * @param asEvaluated true to report a failure to compile exactly as NotationV2's evaluators report it,
+	 * at the same offset
+	 * @return the compiled expression
+	 * @throws InvalidNotationFormatExceptionV2 if the expression is found to be improperly formatted
+	 */
+	CompiledExpression getPostfix(String postfix, boolean asEvaluated) throws InvalidNotationFormatExceptionV2 {
+		Entry entry = lookup(postfix);
+		CompiledExpression compiled = (entry == null) ? null : entry.postfix;
+		count(compiled != null);
+		if (compiled == null) {
+			compiled = NotationV2.compilePostfix(postfix, asEvaluated);
+			if (entry == null) entry = new Entry();
+			entry.postfix = compiled;
+			insert(postfix, entry);
+		}
+		return compiled;
+	}
+
+	/**
+	 * Determine how many lookups found the requested form of their expression already compiled
+	 * @return the hit count
+	 */
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	/**
+	 * Determine how many lookups had to compile the requested form of their expression, including those
+	 * whose expression was cached in the other notation
+	 * @return the miss count
+	 */
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	/**
+	 * Determine how many entries have been evicted to make room for others
+	 * @return the eviction count
+	 */
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+
+	/**
+	 * Determine how many expressions are currently cached
+	 * @return the number of entries
+	 */
+	public int size() {
+		int size = 0;
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				size += segment.map.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Remove every entry. Counters are left as they are
+	 */
+	public void clear() {
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				segment.clear();
+			}
+		}
+	}
+
+	/**
+	 * Summarize the cache's configuration and counters
+	 * @return a one-line description of the cache
+	 */
+	@Override
+	public String toString() {
+		return "CompiledExpressionCache[" + policy + ", size=" + size() + "/" + maximumSize + ", hits=" + getHitCount()
+				+ ", misses=" + getMissCount() + ", evictions=" + getEvictionCount() + "]";
+	}
+
+	/**
+	 * Find the entry for a source expression
+	 * @param source the expression text
+	 * @return the entry for the expression, or null if it is not cached
+	 */
+	private Entry lookup(String source) {
+		Segment segment = segmentFor(source);
+		synchronized (segment) {
+			Entry entry = segment.map.get(source);
+			if (entry != null && policy == Policy.LFU) segment.used(entry);
+			return entry;
+		}
+	}
+
+	/**
+	 * Record whether a lookup found the form it asked for. An entry holding only the other notation's
+	 * program is a miss, since the requested form still has to be compiled
+	 * @param hit true if the requested form was cached
+	 */
+	private void count(boolean hit) {
+		if (hit) hits.increment();
+		else misses.increment();
+	}
+
+	/**
+	 * Add an entry holding a form that has just been compiled successfully, evicting another entry if the
+	 * segment is full. If the expression was added by another thread in the meantime, or the entry is
+	 * still cached, the new form is merged into the cached entry instead
+	 * @param source the expression text
+	 * @param entry the entry holding the new form
+	 */
+	private void insert(String source, Entry entry) {
+		Segment segment = segmentFor(source);
+		synchronized (segment) {
+			Entry cached = segment.map.get(source);
+			if (cached == entry) return;
+			if (cached != null) {
+				if (entry.infix != null) cached.infix = entry.infix;
+				if (entry.postfix != null) cached.postfix = entry.postfix;
+				return;
+			}
+			if (policy == Policy.LFU) segment.add(source, entry);
+			else segment.map.put(source, entry);
+		}
+	}
+
+	/**
+	 * Find the segment responsible for an expression
+	 * @param source the expression text
+	 * @return the segment holding the expression's entry
+	 */
+	private Segment segmentFor(String source) {
+		int hash = source.hashCode();
+		return segments[(hash ^ (hash >>> 16)) & (segments.length - 1)];
+	}
+
+	/**
+	 * The cached forms of one source expression. Each form is filled in the first time it is asked for and
+	 * compiled outside the segment lock; a race simply compiles the same immutable result twice
+	 * @author Mike Meyers
+	 *
+	 */
+	private static final class Entry {
+		volatile CompiledExpression infix; //Compiled as an infix expression
+		volatile CompiledExpression postfix; //Compiled as a postfix expression
+		String key; //The expression text, kept for LFU eviction
+		int slot; //Index in the segment's slots, for LFU sampling
+		int frequency = 1; //Lookups since the entry was added, halved as the segment ages; guarded by the segment lock
+	}
+
+	/**
+	 * One independently locked part of the cache.
+	 *
+	 * LFU segments evict by sampling: a few entries are picked at random and the one with the fewest
+	 * lookups goes, so a miss never scans the segment. Every frequency is halved once the segment has seen
+	 * ten lookups per entry, so expressions that were popular long ago do not stay cached forever
+	 * @author Mike Meyers
+	 *
+	 */
+	@SuppressWarnings("serial")
+	private final class Segment {
+		final int capacity; //The most entries this segment holds
+		final Map<String, Entry> map;
+
+		Entry[] slots; //LFU only: the entries, in no order, for sampling
+		long lookups = 0; //LFU only: lookups since frequencies were last halved
+
+		Segment(int capacity) {
+			this.capacity = capacity;
+			if (policy == Policy.LRU) {
+				//An access-ordered LinkedHashMap keeps the least recently used entry first
+				map = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+					@Override
+					protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+						if (size() <= Segment.this.capacity) return false;
+						evictions.increment();
+						return true;
+					}
+				};
+			}
+			else {
+				map = new HashMap<>();
+				slots = new Entry[capacity];
+			}
+		}
+
+		/**
+		 * Count a lookup of an LFU entry, aging every entry once enough lookups have been seen
+		 * @param entry the entry found
+		 */
+		void used(Entry entry) {
+			if (entry.frequency < Integer.MAX_VALUE) entry.frequency++;
+			if (++lookups >= 10L * capacity) {
+				for (int i = 0; i < map.size(); i++) slots[i].frequency >>>= 1;
+				lookups = 0;
+			}
+		}
+
+		/**
+		 * Add an LFU entry, first evicting the least used of a random sample if the segment is full
+		 * @param key the expression text
+		 * @param entry the new entry
+		 */
+		void add(String key, Entry entry) {
+			int size = map.size();
+			if (size == capacity) {
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				Entry victim = slots[random.nextInt(size)];
+				for (int i = 1; i < EVICTION_SAMPLES; i++) {
+					Entry candidate = slots[random.nextInt(size)];
+					if (candidate.frequency < victim.frequency) victim = candidate;
+				}
+				map.remove(victim.key);
+				Entry last = slots[--size];
+				slots[victim.slot] = last;
+				last.slot = victim.slot;
+				slots[size] = null;
+				evictions.increment();
+			}
+			entry.key = key;
+			entry.slot = size;
+			slots[size] = entry;
+			map.put(key, entry);
+		}
+
+		/**
+		 * Remove every entry
+		 */
+		void clear() {
+			map.clear();
+			if (slots != null) Arrays.fill(slots, null);
+			lookups = 0;
+		}
+	}
+}
@@ -0,0 +1,281 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+
+/**
+ * A bounded, lock-free implementation of QueueInterface for handing work between threads.
+ *
+ * Any number of threads may enqueue and dequeue at once. The Queue is a ring buffer in which every slot
+ * has a sequence number saying whose turn it is: the producer that claims position p waits for the slot's
+ * sequence to equal p, and the consumer that claims it waits for p + 1. Producers and consumers claim
+ * positions with a single compare-and-set on the tail or head counter, so threads never block one another
+ * and the only contention is on the counter itself. This is Dmitry Vyukov's bounded MPMC queue.
+ *
+ * The head and tail counters are padded onto cache lines of their own, so producers advancing the tail
+ * do not slow down consumers reading the head, and vice versa.
+ *
+ * Unlike MyQueue and ArrayQueue, the capacity is fixed when the Queue is created. It is rounded up to a
+ * power of two, and to at least two, since a single slot cannot tell a full Queue from an empty one.
+ * Null elements are not allowed, since poll() uses null to mean the Queue was empty.
+ * size(), isEmpty(), isFull() and toString() give a moment-in-time view that may already be stale
+ * when other threads are using the Queue.
+ *
+ * @author Mike Meyers
+ *
+ * @param <T> data type
+ */
+public class ConcurrentArrayQueue<T> extends ConcurrentArrayQueueHead implements QueueInterface<T> {
+
+	private static final int DEFAULT_CAPACITY = 1024;
+	private static final int MAX_CAPACITY = 1 << 30;
+	private static final VarHandle SEQUENCE = MethodHandles.arrayElementVarHandle(long[].class);
+	private static final VarHandle ELEMENT = MethodHandles.arrayElementVarHandle(Object[].class);
+
+	private final Object[] data; //The ring buffer holding the Queue's data
+	private final long[] sequences; //Each slot's sequence number, saying which position may use it next
+	private final int mask; //Capacity minus one, for wrapping a position to a slot
+
+	/**
+	 * Create an empty Queue with the default capacity
+	 */
+	public ConcurrentArrayQueue() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Create an empty Queue with at least the given capacity
+	 * @param maxVal the minimum capacity of the Queue; rounded up to a power of two, and to at least two
+	 */
+	public ConcurrentArrayQueue(int maxVal) {
+		if (maxVal < 1) throw new IllegalArgumentException("The queue must hold at least one element");
+		int capacity = maxVal >= MAX_CAPACITY ? MAX_CAPACITY : Integer.highestOneBit(Math.max(maxVal - 1, 1) << 1);
+		data = new Object[capacity];
+		sequences = new long[capacity];
+		mask = capacity - 1;
+
+		//Slot i is first used by position i
+		for (int i = 0; i < capacity; i++) sequences[i] = i;
+		VarHandle.releaseFence();
+	}
+
+	/**
+	 * Add an element to the Queue if there is room
+	 * @param e the element to add
+	 * @return true if the element was added, false if the Queue was full
+	 * @throws NullPointerException if the element is null
+	 */
+	public boolean offer(T e) {
+		if (e == null) throw new NullPointerException();
+		long position = (long) TAIL.getOpaque(this);
+		while (true) {
+			int slot = (int) position & mask;
+			long turn = (long) SEQUENCE.getAcquire(sequences, slot) - position;
+			if (turn == 0) {
+				//The slot is free for this position; claim the position, then fill the slot
+				if (TAIL.weakCompareAndSet(this, position, position + 1)) {
+					ELEMENT.set(data, slot, e);
+					SEQUENCE.setRelease(sequences, slot, position + 1);
+					return true;
+				}
+				position = (long) TAIL.getOpaque(this);
+			}
+			else if (turn < 0) {
+				//The slot still holds the element from one lap ago: the Queue is full
+				return false;
+			}
+			else {
+				//Another producer claimed this position first
+				position = (long) TAIL.getOpaque(this);
+			}
+		}
+	}
+
+	/**
+	 * Remove the first element from the Queue if there is one
+	 * @return the first element, or null if the Queue was empty
+	 */
+	@SuppressWarnings("unchecked")
+	public T poll() {
+		long position = (long) HEAD.getOpaque(this);
+		while (true) {
+			int slot = (int) position & mask;
+			long turn = (long) SEQUENCE.getAcquire(sequences, slot) - (position + 1);
+			if (turn == 0) {
+				//The slot has been filled for this position; claim the position, then empty the slot
+				if (HEAD.weakCompareAndSet(this, position, position + 1)) {
+					T e = (T) ELEMENT.get(data, slot);
+					ELEMENT.set(data, slot, null);
+					//Hand the slot to the producer one lap ahead
+					SEQUENCE.setRelease(sequences, slot, position + mask + 1);
+					return e;
+				}
+				position = (long) HEAD.getOpaque(this);
+			}
+			else if (turn < 0) {
+				//The slot has not been filled yet: the Queue is empty
+				return null;
+			}
+			else {
+				//Another consumer claimed this position first
+				position = (long) HEAD.getOpaque(this);
+			}
+		}
+	}
+
+	/**
+	 * Determine if the Queue is empty (not containing data)
+	 * @return true if the Queue was empty when checked
+	 */
+	@Override
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * Determine if the Queue is full
+	 * @return true if the Queue was full when checked
+	 */
+	@Override
+	public boolean isFull() {
+		return size() == data.length;
+	}
+
+	/**
+	 * Remove the first object from the queue
+	 * @return the object T that was the first item in the queue
+	 * @throws QueueUnderflowException if there is no data to return (if the queue is empty)
+	 */
+	@Override
+	public T dequeue() throws QueueUnderflowException {
+		T e = poll();
+		if (e == null) throw new QueueUnderflowException();
+		return e;
+	}
+
+	/**
+	 * Determine the current size of the Queue
+	 * @return the number of items in the Queue when checked
+	 */
+	@Override
+	public int size() {
+		//Read the head on both sides of the tail, so the two counters come from a consistent moment
+		while (true) {
+			long head = (long) HEAD.getVolatile(this);
+			long tail = (long) TAIL.getVolatile(this);
+			if (head == (long) HEAD.getVolatile(this)) return (int) Math.max(0, Math.min(tail - head, data.length));
+		}
+	}
+
+	/**
+	 * Determine the most elements the Queue can hold
+	 * @return the capacity of the Queue
+	 */
+	public int capacity() {
+		return data.length;
+	}
+
+	/**
+	 * Add an object of type T to the Queue
+	 * @param e the object of type T to be added to the Queue
+	 * @throws QueueOverflowException if the Queue is full
+	 * @throws NullPointerException if the element is null
+	 */
+	@Override
+	public boolean enqueue(T e) throws QueueOverflowException {
+		if (!offer(e)) throw new QueueOverflowException();
+		return true;
+	}
+
+	/**
+	 * Retrieve all data stored in the Queue as a single String. Elements added or removed by other
+	 * threads while the String is built may or may not appear
+	 * @param delimiter the String to be used to separate the data retrieved from each object
+	 * @return the data from each object in the Queue, delimited by the indicated String
+	 */
+	@Override
+	public String toString(String delimiter) {
+		StringBuilder builder = new StringBuilder();
+		long head = (long) HEAD.getVolatile(this);
+		long tail = (long) TAIL.getVolatile(this);
+		boolean first = true;
+		for (long position = head; position < tail; position++) {
+			int slot = (int) position & mask;
+			Object e = ELEMENT.getVolatile(data, slot);
+			//Skip slots whose element has not been published yet, or has moved on to a later lap
+			if (e == null || (long) SEQUENCE.getAcquire(sequences, slot) != position + 1) continue;
+			if (!first) builder.append(delimiter);
+			builder.append(e);
+			first = false;
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Fill the Queue with elements from an ArrayList. If there are already objects in the Queue,
+	 * the ArrayList elements will enter the Queue from the back
+	 * @param list the ArrayList of elements to be added to the Queue
+	 * @throws QueueOverflowException if the Queue fills before the list is exhausted
+	 */
+	@Override
+	public void fill(ArrayList<T> list) {
+		for (int i = 0; i < list.size(); i++) {
+			enqueue(list.get(i));
+		}
+	}
+
+	/**
+	 * Return a String representation of the data in each item of the Queue
+	 * @return a single String representing the entire Queue
+	 */
+	@Override
+	public String toString() {
+		return toString("");
+	}
+}
+
+/*
+ * The head and tail counters of ConcurrentArrayQueue, each surrounded by 64 bytes of padding. The JVM lays out
+ * a superclass's fields before its subclass's, so splitting them over a class hierarchy keeps the field order,
+ * and so the padding, in place. This is the layout used by JCTools and the JDK's own striped counters
+ */
+
+@SuppressWarnings("unused")
+abstract class ConcurrentArrayQueuePad0 {
+	private long p00, p01, p02, p03, p04, p05, p06, p07;
+}
+
+abstract class ConcurrentArrayQueueTail extends ConcurrentArrayQueuePad0 {
+	static final VarHandle TAIL;
+	static {
+		try {
+			TAIL = MethodHandles.lookup().findVarHandle(ConcurrentArrayQueueTail.class, "tail", long.class);
+		}
+		catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	volatile long tail; //The next position a producer will claim
+}
+
+@SuppressWarnings("unused")
+abstract class ConcurrentArrayQueuePad1 extends ConcurrentArrayQueueTail {
+	private long p10, p11, p12, p13, p14, p15, p16, p17;
+}
+
+abstract class ConcurrentArrayQueueHead extends ConcurrentArrayQueuePad1 {
+	static final VarHandle HEAD;
+	static {
+		try {
+			HEAD = MethodHandles.lookup().findVarHandle(ConcurrentArrayQueueHead.class, "head", long.class);
+		}
+		catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	volatile long head; //The next position a consumer will claim
+
+	@SuppressWarnings("unused")
+	private long p20, p21, p22, p23, p24, p25, p26, p27;
+}
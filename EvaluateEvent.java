@@ -0,0 +1,20 @@
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * A slow evaluation of an expression, including any parsing it needed
+ * @author Mike Meyers
+ *
+ */
+@Name("notation.Evaluate")
+@Label("Notation Evaluate")
+@Description("Evaluating an expression; parsing is included unless the expression came from the expression cache")
+@Threshold("1 ms")
+class EvaluateEvent extends NotationEvent {
+
+	@Label("Cached")
+	@Description("True if the compiled expression came from the expression cache")
+	boolean cached;
+}
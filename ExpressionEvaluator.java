@@ -0,0 +1,152 @@
+/**
+ * Reusable state for evaluating expressions: a lexer, a primitive operator Stack and a
+ * primitive operand Stack. Intermediate results stay as doubles from start to finish,
+ * so once its Stacks have grown to size an evaluator creates no objects per expression.
+ *
+ * An evaluator is not thread-safe; each thread should use its own.
+ *
+ * @author Mike Meyers
+ *
+ */
+public class ExpressionEvaluator implements PostfixSink {
+
+	private final NotationLexer lexer = new NotationLexer(); //Tokenizer for each expression
+	private final OperatorStack operators = new OperatorStack(); //Operators waiting for their second operand
+	private final DoubleStack operands = new DoubleStack(); //Operands and intermediate results
+	private int secondOperand; //Offset of the operand that starts the second stack entry, while there is one
+	private int peakDepth; //Deepest the operand Stack grew for the current expression
+	private final NotationResult outcome = new NotationResult(); //Reused for each expression of a batch or throwing call
+
+	/**
+	 * Evaluate an infix expression, validating it in the same pass
+	 * @param infix the infix-notated expression for evaluation
+	 * @return the evaluated expression value
+	 * @throws InvalidNotationFormatExceptionV2 if the expression is found to be improperly formatted
+	 */
+	public double evaluateInfix(CharSequence infix) throws InvalidNotationFormatExceptionV2 {
+		if (!tryEvaluateInfix(infix, outcome)) throw outcome.exception();
+		return outcome.getValue();
+	}
+
+	/**
+	 * Evaluate an infix expression, reporting invalid input in a result rather than throwing it.
+	 * Nothing is thrown or caught along the way, so invalid input costs no more than valid input
+	 * @param infix the infix-notated expression for evaluation
+	 * @param result receives the value, or the error code, position and reason of the first problem found
+	 * @return true if the expression was evaluated, false if it was invalid
+	 */
+	public boolean tryEvaluateInfix(CharSequence infix, NotationResult result) {
+		operators.clear();
+		operands.clear();
+		peakDepth = 0;
+		return NotationV2.parseInfix(lexer.reset(infix), operators, this, result) && finish(result);
+	}
+
+	/**
+	 * Evaluate a postfix expression, validating it in the same pass
+	 * @param postfix the postfix-notated expression for evaluation
+	 * @return the evaluated expression value
+	 * @throws InvalidNotationFormatExceptionV2 if the expression is found to be improperly formatted
+	 */
+	public double evaluatePostfix(CharSequence postfix) throws InvalidNotationFormatExceptionV2 {
+		if (!tryEvaluatePostfix(postfix, outcome)) throw outcome.exception();
+		return outcome.getValue();
+	}
+
+	/**
+	 * Evaluate a postfix expression, reporting invalid input in a result rather than throwing it.
+	 * Nothing is thrown or caught along the way, so invalid input costs no more than valid input
+	 * @param postfix the postfix-notated expression for evaluation
+	 * @param result receives the value, or the error code, position and reason of the first problem found
+	 * @return true if the expression was evaluated, false if it was invalid
+	 */
+	public boolean tryEvaluatePostfix(CharSequence postfix, NotationResult result) {
+		operands.clear();
+		peakDepth = 0;
+		return NotationV2.parsePostfix(lexer.reset(postfix), this, result) && finish(result);
+	}
+
+	/**
+	 * Evaluate a range of infix expressions, reusing this evaluator's lexer and Stacks for every one.
+	 * Failures are reported as error codes rather than exceptions
+	 * @param expressions the infix-notated expressions for evaluation
+	 * @param from index of the first expression to evaluate
+	 * @param to index one past the last expression to evaluate
+	 * @param results receives the value of each expression at its own index, or NaN if it failed
+	 * @param errors receives the NotationError code of each expression at its own index; may be null
+	 * @return the number of expressions that failed
+	 */
+	public int evaluateBatch(CharSequence[] expressions, int from, int to, double[] results, int[] errors) {
+		int failures = 0;
+		for (int i = from; i < to; i++) {
+			
+			//Validation happens while evaluating, so a failure carries the code of the first problem found
+			if (!tryEvaluateInfix(expressions[i], outcome)) failures++;
+			results[i] = outcome.getValue();
+			if (errors != null) errors[i] = outcome.getError();
+		}
+		return failures;
+	}
+
+	/**
+	 * Determine how many tokens the most recent expression had, as far as it was read
+	 * @return the number of tokens scanned
+	 */
+	int tokenCount() {
+		return lexer.tokenCount();
+	}
+
+	/**
+	 * Determine how deep the operand Stack grew for the most recent expression
+	 * @return the peak depth of the operand Stack
+	 */
+	int peakDepth() {
+		return peakDepth;
+	}
+
+	/**
+	 * Push a number onto the operand Stack
+	 * @param lexer the lexer positioned on the operand token
+	 * @param result receives UNBOUND_VARIABLE if the operand is a variable, which has no value
+	 * @return true if the number was pushed
+	 */
+	@Override
+	public boolean operand(NotationLexer lexer, NotationResult result) {
+		if (lexer.tokenType() != NotationLexer.NUMBER) return result.fail(NotationError.UNBOUND_VARIABLE, lexer.tokenStart());
+		operands.push(lexer.numberValue());
+		int size = operands.size();
+		if (size > peakDepth) peakDepth = size;
+		if (size == 2) secondOperand = lexer.tokenStart();
+		return true;
+	}
+
+	/**
+	 * Apply an operator to the top two operands, replacing them with the result
+	 * @param operator the operator character
+	 * @param position offset of the operator in the source
+	 * @param result receives MISSING_OPERAND if there are not two operands for the operator
+	 * @return true if the operator was applied
+	 */
+	@Override
+	public boolean operator(char operator, int position, NotationResult result) {
+		if (operands.size() < 2) return result.fail(NotationError.MISSING_OPERAND, position);
+		double right = operands.pop();
+		double left = operands.pop();
+		operands.push(NotationV2.calculate(left, right, operator));
+		return true;
+	}
+
+	/**
+	 * Record the finished result of an expression
+	 * @param result receives the single value left on the operand Stack, or the error if the expression
+	 * did not reduce to exactly one value; an operand left over is reported at the start of the second
+	 * stack entry, the first that nothing combined
+	 * @return true if the expression reduced to one value
+	 */
+	private boolean finish(NotationResult result) {
+		int size = operands.size();
+		if (size != 1) return result.fail(NotationError.unreduced(size), size == 0 ? -1 : secondOperand);
+		result.succeed(operands.pop());
+		return true;
+	}
+}
@@ -0,0 +1,19 @@
+/**
+ * A compiled expression reduced to a function of its variable values.
+ *
+ * Implemented by CompiledExpression, which interprets its program, and by the classes BytecodeCompiler
+ * generates, which run the same arithmetic as straight-line Java bytecode.
+ *
+ * @author Mike Meyers
+ *
+ */
+@FunctionalInterface
+public interface ExpressionFunction {
+
+	/**
+	 * Evaluate the expression against a set of variable values
+	 * @param bindings the value of each variable, indexed by slot; may be null if the expression has no variables
+	 * @return the value of the expression
+	 */
+	double evaluate(double[] bindings);
+}
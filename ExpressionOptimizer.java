@@ -0,0 +1,336 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Simplify parsed expressions before they are compiled, so that work which gives the same answer every time
+ * is done once instead of on every evaluation.
+ *
+ * The optimizer reads an ExpressionTree and makes three kinds of change:
+ * 
+ * 1. Constant subtrees are folded into a single number, e.g. (3600 * 24) * x becomes 86400 * x.
+ * 2. Identities that hold for every double, including NaN, infinities and -0.0, are applied:
+ *    x * 1, 1 * x, x / 1, x ^ 1 and x - 0 become x, and x ^ 0 becomes 1. x + 0 is left alone, because
+ *    -0.0 + 0 is +0.0, not -0.0.
+ * 3. Repeated subexpressions are computed once. The first result is stored in a spare slot of the
+ *    operand stack and recalled wherever the subexpression appears again.
+ *
+ * Folding uses the same arithmetic as evaluation, and operations are never reordered, so every
+ * optimized expression evaluates to exactly the value of the original. Variable slots are the same as
+ * NotationV2.compile assigns, even for variables that are optimized away, so the same bindings work for both.
+ *
+ * An optimizer is not thread-safe, but may be reused for any number of expressions.
+ *
+ * @author Mike Meyers
+ *
+ */
+public final class ExpressionOptimizer {
+
+	//Kinds of node in the optimized expression
+	private static final int CONSTANT = -1;
+	private static final int VARIABLE = -2;
+
+	private int[] kind = new int[16]; //Opcode of each operator node, or CONSTANT/VARIABLE for leaves
+	private int[] left = new int[16]; //Left operand of each operator node, or the slot of a variable
+	private int[] right = new int[16]; //Right operand of each operator node
+	private double[] value = new double[16]; //Value of each constant node
+	private int count = 0; //Number of nodes in the optimized expression
+
+	private final HashMap<Long, Integer> operations = new HashMap<>(); //Operator nodes by opcode and operands
+	private final HashMap<Long, Integer> numbers = new HashMap<>(); //Constant nodes by value
+	private int instructions = 0; //Pushes, recalls and operators in the most recent program
+	private int nodesRemoved = 0; //Nodes removed by the most recent optimization
+
+	/**
+	 * Create an optimizer
+	 */
+	public ExpressionOptimizer() {
+	}
+
+	/**
+	 * Parse, optimize and compile an infix expression
+	 * @param infix the infix-notated expression to compile
+	 * @return the optimized compiled expression
+	 * @throws InvalidNotationFormatExceptionV2 if the input is found to be improperly formatted
+	 */
+	public CompiledExpression compile(String infix) throws InvalidNotationFormatExceptionV2 {
+		return optimize(ExpressionTree.parseInfix(infix), infix);
+	}
+
+	/**
+	 * Parse, optimize and compile a postfix expression
+	 * @param postfix the postfix-notated expression to compile
+	 * @return the optimized compiled expression
+	 * @throws InvalidNotationFormatExceptionV2 if the input is found to be improperly formatted
+	 */
+	public CompiledExpression compilePostfix(String postfix) throws InvalidNotationFormatExceptionV2 {
+		return optimize(ExpressionTree.parsePostfix(postfix), postfix);
+	}
+
+	/**
+	 * Optimize an expression tree and compile the result
+	 * @param tree the parsed expression
+	 * @param source the expression the tree was parsed from
+	 * @return the optimized compiled expression
+	 */
+	public CompiledExpression optimize(ExpressionTree tree, String source) {
+		reset();
+
+		//Rebuild the tree bottom-up. Nodes are stored children first, so every operand is mapped before its operator
+		int[] mapped = new int[tree.size()];
+		ArrayList<String> variables = new ArrayList<>();
+		int[] variablePositions = new int[tree.size()]; //Offset of each variable's first appearance, indexed by slot
+		for (int node = 0; node < tree.size(); node++) {
+			if (tree.isVariable(node)) {
+				//Variables keep the slot they were given on first appearance, exactly as ProgramBuilder assigns them
+				String name = tree.operandText(node);
+				int slot = variables.indexOf(name);
+				if (slot < 0) {
+					slot = variables.size();
+					variables.add(name);
+					variablePositions[slot] = tree.operandStart(node);
+				}
+				mapped[node] = variable(slot);
+			}
+			else if (tree.isOperand(node)) mapped[node] = constant(tree.operandValue(node));
+			else mapped[node] = operation(CompiledExpression.opcode(tree.operator(node)),
+					mapped[tree.left(node)], mapped[tree.right(node)]);
+		}
+
+		int root = mapped[tree.root()];
+		CompiledExpression compiled = emit(root, countUses(root), source, tree.tokenCount(), variables.toArray(new String[0]),
+				Arrays.copyOf(variablePositions, variables.size()));
+		nodesRemoved = tree.size() - instructions;
+		return compiled;
+	}
+
+	/**
+	 * Determine how many nodes the most recent optimization removed, through folding, identities
+	 * and sharing repeated subexpressions. A recalled subexpression counts as a single node
+	 * @return the number of tree nodes that the program no longer evaluates
+	 */
+	public int getNodesRemoved() {
+		return nodesRemoved;
+	}
+
+	/**
+	 * Find or create the node for an operator applied to two operands, folding and simplifying where possible
+	 * @param opcode the operator's opcode
+	 * @param a the left operand node
+	 * @param b the right operand node
+	 * @return the node computing the operation's value
+	 */
+	private int operation(int opcode, int a, int b) {
+		//Fold operations on two constants, with the same arithmetic evaluation would use
+		if (kind[a] == CONSTANT && kind[b] == CONSTANT) {
+			return constant(NotationV2.calculate(value[a], value[b], operator(opcode)));
+		}
+
+		//Apply the identities that hold for every double
+		if (isConstant(b, 1.0) && (opcode == CompiledExpression.MULTIPLY || opcode == CompiledExpression.DIVIDE
+				|| opcode == CompiledExpression.POWER)) return a;
+		if (isConstant(a, 1.0) && opcode == CompiledExpression.MULTIPLY) return b;
+		if (isConstant(b, 0.0) && opcode == CompiledExpression.SUBTRACT) return a;
+		if (kind[b] == CONSTANT && value[b] == 0.0 && opcode == CompiledExpression.POWER) return constant(1.0);
+
+		//Share the node if the same operation on the same operands was seen before
+		Long key = ((long) opcode << 56) | ((long) a << 28) | b;
+		Integer existing = operations.get(key);
+		if (existing != null) return existing;
+		int node = add(opcode, a, b, 0);
+		operations.put(key, node);
+		return node;
+	}
+
+	/**
+	 * Find or create the node for a constant
+	 * @param number the constant's value
+	 * @return the constant node
+	 */
+	private int constant(double number) {
+		//Constants are matched bit for bit, so -0.0 and 0.0 stay distinct
+		Long key = Double.doubleToRawLongBits(number);
+		Integer existing = numbers.get(key);
+		if (existing != null) return existing;
+		int node = add(CONSTANT, 0, 0, number);
+		numbers.put(key, node);
+		return node;
+	}
+
+	/**
+	 * Find or create the node for a variable
+	 * @param slot the variable's slot
+	 * @return the variable node
+	 */
+	private int variable(int slot) {
+		Long key = ((long) VARIABLE << 32) | slot;
+		Integer existing = operations.get(key);
+		if (existing != null) return existing;
+		int node = add(VARIABLE, slot, 0, 0);
+		operations.put(key, node);
+		return node;
+	}
+
+	/**
+	 * Count how many times each node is used as an operand, starting from the root.
+	 * Nodes the root does not depend on are left with a count of zero
+	 * @param root the root node
+	 * @return the use count of each node
+	 */
+	private int[] countUses(int root) {
+		int[] uses = new int[root + 1];
+		uses[root] = 1;
+
+		//Operands are always created before the operators that use them, so one backwards sweep reaches every node.
+		//A shared node is only computed once, so its operands are counted once however often it is used
+		for (int node = root; node >= 0; node--) {
+			if (uses[node] == 0 || kind[node] < 0) continue;
+			uses[left[node]]++;
+			uses[right[node]]++;
+		}
+		return uses;
+	}
+
+	/**
+	 * Write the optimized expression as a program. Operator nodes used more than once are computed on
+	 * first use, stored in a slot above the operand stack, and recalled afterwards
+	 * @param root the root node
+	 * @param uses the use count of each node
+	 * @param source the expression the program is compiled from
+	 * @param tokens the number of tokens in the source
+	 * @param variables the variable names, indexed by slot
+	 * @param variablePositions the offset where each variable first appears, indexed by slot
+	 * @return the compiled expression
+	 */
+	private CompiledExpression emit(int root, int[] uses, String source, int tokens, String[] variables, int[] variablePositions) {
+		//Give each shared operator node a temporary number, and each constant an index in the constants array
+		int[] temporary = new int[root + 1];
+		int[] constantIndex = new int[root + 1];
+		int temporaries = 0;
+		int constantCount = 0;
+		for (int node = 0; node <= root; node++) {
+			temporary[node] = -1;
+			if (uses[node] == 0) continue;
+			if (kind[node] == CONSTANT) constantIndex[node] = constantCount++;
+			else if (kind[node] >= 0 && uses[node] > 1) temporary[node] = temporaries++;
+		}
+		double[] constants = new double[constantCount];
+		for (int node = 0; node <= root; node++) {
+			if (uses[node] > 0 && kind[node] == CONSTANT) constants[constantIndex[node]] = value[node];
+		}
+
+		//Temporary slots are placed above the operand stack, so their positions are only known once the
+		//program's depth is. Record where each one is referenced and patch the positions in afterwards
+		int[] code = new int[16];
+		int length = 0;
+		int depth = 0;
+		int maxDepth = 0;
+		instructions = 0;
+		boolean[] computed = new boolean[root + 1];
+
+		//Each entry is a node index, shifted left one bit, with a bit set once its operands have been written
+		int[] stack = new int[16];
+		int top = 0;
+		stack[0] = root << 1;
+		while (top >= 0) {
+			int node = stack[top] >>> 1;
+			boolean operandsWritten = (stack[top] & 1) != 0;
+			if (length + 2 >= code.length) code = Arrays.copyOf(code, code.length * 2);
+
+			if (kind[node] == CONSTANT || kind[node] == VARIABLE || computed[node]) {
+				//Leaves and already computed shared nodes are a single push
+				if (kind[node] == CONSTANT) {
+					code[length++] = CompiledExpression.PUSH;
+					code[length++] = constantIndex[node];
+				}
+				else if (kind[node] == VARIABLE) {
+					code[length++] = CompiledExpression.LOAD;
+					code[length++] = left[node];
+				}
+				else {
+					code[length++] = CompiledExpression.RECALL;
+					code[length++] = temporary[node];
+				}
+				if (++depth > maxDepth) maxDepth = depth;
+				instructions++;
+				top--;
+			}
+			else if (!operandsWritten) {
+				//Write the left operand, then the right, then come back for the operator
+				if (top + 2 >= stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+				stack[top] |= 1;
+				stack[++top] = right[node] << 1;
+				stack[++top] = left[node] << 1;
+			}
+			else {
+				code[length++] = kind[node];
+				depth--;
+				instructions++;
+				if (temporary[node] >= 0) {
+					code[length++] = CompiledExpression.STORE;
+					code[length++] = temporary[node];
+					computed[node] = true;
+				}
+				top--;
+			}
+		}
+
+		//Temporaries live just above the deepest the operand stack grows
+		for (int pc = 0; pc < length; pc++) {
+			int op = code[pc];
+			if (op == CompiledExpression.STORE || op == CompiledExpression.RECALL) code[pc + 1] += maxDepth;
+			if (op == CompiledExpression.PUSH || op == CompiledExpression.LOAD
+					|| op == CompiledExpression.STORE || op == CompiledExpression.RECALL) pc++;
+		}
+
+		return new CompiledExpression(source, tokens, Arrays.copyOf(code, length), constants, maxDepth + temporaries, variables,
+				variablePositions);
+	}
+
+	/**
+	 * Determine if a node is a particular constant, matched bit for bit
+	 */
+	private boolean isConstant(int node, double number) {
+		return kind[node] == CONSTANT && Double.doubleToRawLongBits(value[node]) == Double.doubleToRawLongBits(number);
+	}
+
+	/**
+	 * Translate an opcode back into its operator character
+	 */
+	private static char operator(int opcode) {
+		switch (opcode) {
+			case CompiledExpression.ADD : return '+';
+			case CompiledExpression.SUBTRACT : return '-';
+			case CompiledExpression.MULTIPLY : return '*';
+			case CompiledExpression.DIVIDE : return '/';
+			default : return '^';
+		}
+	}
+
+	/**
+	 * Append a node, growing the arrays as needed
+	 * @return the index of the new node
+	 */
+	private int add(int nodeKind, int a, int b, double number) {
+		if (count == kind.length) {
+			kind = Arrays.copyOf(kind, count * 2);
+			left = Arrays.copyOf(left, count * 2);
+			right = Arrays.copyOf(right, count * 2);
+			value = Arrays.copyOf(value, count * 2);
+		}
+		kind[count] = nodeKind;
+		left[count] = a;
+		right[count] = b;
+		value[count] = number;
+		return count++;
+	}
+
+	/**
+	 * Discard the nodes of the previous expression
+	 */
+	private void reset() {
+		count = 0;
+		operations.clear();
+		numbers.clear();
+	}
+}
@@ -0,0 +1,138 @@
+import java.util.Random;
+
+/**
+ * Self-check that ExpressionOptimizer never changes the value of an expression.
+ *
+ * Each expression is compiled twice, by NotationV2.compile as written and by ExpressionOptimizer, and
+ * both programs are evaluated on every combination of the values where IEEE arithmetic is most easily
+ * broken: NaN, both zeros, both infinities, subnormals, the extremes of the normal range, and a few
+ * ordinary numbers. The expressions are every identity the optimizer applies, the near-misses it must
+ * leave alone (such as x + 0, which turns -0.0 into +0.0), and random expressions with repeated
+ * subexpressions and constant subtrees.
+ *
+ * Results are compared with doubleToLongBits, so -0.0 and 0.0 are different but all NaNs are the same:
+ * Java does not promise which NaN an operation on a NaN returns, so only NaN-ness is checked.
+ *
+ * Prints the first mismatches and exits with status 1 if there are any.
+ *
+ * Usage: java ExpressionOptimizerCheck [--random n] [--seed n]
+ *
+ * @author Mike Meyers
+ *
+ */
+public class ExpressionOptimizerCheck {
+
+	//Values bound to each variable
+	private static final double[] VALUES = {
+		Double.NaN, Double.longBitsToDouble(0x7ff0000000000001L), 0.0, -0.0, Double.POSITIVE_INFINITY,
+		Double.NEGATIVE_INFINITY, Double.MIN_VALUE, -Double.MIN_VALUE, 1e-310, Double.MIN_NORMAL,
+		Double.MAX_VALUE, -Double.MAX_VALUE, 1.0, -1.0, 0.5, 2.0, 3.0,
+	};
+
+	//Every identity the optimizer applies, and the rewrites it must not make
+	private static final String[] FIXED_CASES = {
+		"x * 1", "1 * x", "x / 1", "x ^ 1", "x - 0", "x ^ 0",
+		"x * 1.0", "1.00 * x", "x / 01", "x - 0.0", "x ^ 0.0", "x - 00",
+		"(x + y) * 1", "1 * (x * y)", "(x - y) / 1", "(x / y) ^ 1", "(x ^ y) - 0", "(x - y) ^ 0",
+		"x + 0", "0 + x", "0 - x", "x * 0", "0 * x", "x / 0", "0 / x", "1 / x", "x - x", "x / x",
+		"x * (0 - 1)", "x ^ 2", "0 ^ x", "1 ^ x", "x * 2 / 2", "x + 1 - 1",
+		"x * y + x * y", "(x + y) * (x + y) - (x + y)", "(x - y) / (x - y)", "x ^ y ^ x ^ y",
+		"(2 + 3) * x", "x * (2 - 2)", "(1 - 1) ^ x", "(0 - 0) - x", "x - (1 - 1)", "x * (4 / 4)",
+	};
+
+	private static final int MAX_REPORTED = 20; //Mismatches printed before the rest are only counted
+
+	private long checked = 0; //Evaluations compared
+	private long mismatches = 0; //Evaluations whose results differed
+
+	public static void main(String[] args) {
+		int random = 2_000;
+		long seed = 1;
+		for (int i = 0; i < args.length; i++) {
+			switch (args[i]) {
+				case "--random" : random = Integer.parseInt(args[++i]); break;
+				case "--seed" : seed = Long.parseLong(args[++i]); break;
+				default :
+					System.err.println("Usage: java ExpressionOptimizerCheck [--random n] [--seed n]");
+					System.exit(1);
+			}
+		}
+
+		ExpressionOptimizerCheck check = new ExpressionOptimizerCheck();
+		ExpressionOptimizer optimizer = new ExpressionOptimizer();
+		for (String expression : FIXED_CASES) check.compare(expression, optimizer);
+		Random generator = new Random(seed);
+		for (int i = 0; i < random; i++) check.compare(randomExpression(generator, 4), optimizer);
+
+		System.out.println("ExpressionOptimizerCheck: " + check.checked + " evaluations, " + check.mismatches + " mismatches");
+		if (check.mismatches > 0) System.exit(1);
+	}
+
+	/**
+	 * Create a random fully parenthesized expression over x, y, z and constants that the optimizer treats
+	 * specially, so identities, folding and repeated subexpressions all arise
+	 * @param random the source of choices
+	 * @param depth the most levels of operators below this one
+	 * @return the infix expression
+	 */
+	private static String randomExpression(Random random, int depth) {
+		if (depth == 0 || random.nextInt(4) == 0) {
+			switch (random.nextInt(8)) {
+				case 0 : return "0";
+				case 1 : return "1";
+				case 2 : return "2";
+				case 3 : return "0.5";
+				case 4 : return "y";
+				case 5 : return "z";
+				default : return "x";
+			}
+		}
+		char operator = "+-*/^".charAt(random.nextInt(5));
+		return "(" + randomExpression(random, depth - 1) + " " + operator + " " + randomExpression(random, depth - 1) + ")";
+	}
+
+	/**
+	 * Evaluate an expression as written and as optimized on every combination of VALUES for its variables,
+	 * and compare the results
+	 * @param expression the infix expression
+	 * @param optimizer the optimizer to compile it with
+	 */
+	private void compare(String expression, ExpressionOptimizer optimizer) {
+		CompiledExpression plain = NotationV2.compile(expression);
+		CompiledExpression optimized = optimizer.compile(expression);
+		int variables = plain.getVariableCount();
+		if (optimized.getVariableCount() != variables) {
+			mismatch(expression + ": " + optimized.getVariableCount() + " variables, expected " + variables);
+			return;
+		}
+
+		//Count through every combination of values, like an odometer
+		int[] choice = new int[variables];
+		double[] bindings = new double[variables];
+		while (true) {
+			for (int i = 0; i < variables; i++) bindings[i] = VALUES[choice[i]];
+			double expected = plain.evaluate(bindings);
+			double actual = optimized.evaluate(bindings);
+			checked++;
+			if (Double.doubleToLongBits(expected) != Double.doubleToLongBits(actual)) {
+				StringBuilder where = new StringBuilder();
+				String[] names = plain.getVariableNames();
+				for (int i = 0; i < variables; i++) where.append(i == 0 ? " with " : ", ").append(names[i]).append(" = ").append(bindings[i]);
+				mismatch(expression + where + ": optimized " + actual + ", expected " + expected);
+			}
+
+			int i = variables - 1;
+			while (i >= 0 && ++choice[i] == VALUES.length) choice[i--] = 0;
+			if (i < 0) break;
+		}
+	}
+
+	/**
+	 * Count a mismatch, printing it if few have been printed so far
+	 * @param description what differed
+	 */
+	private void mismatch(String description) {
+		if (mismatches < MAX_REPORTED) System.out.println("MISMATCH " + description);
+		mismatches++;
+	}
+}
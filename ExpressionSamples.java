@@ -0,0 +1,86 @@
+import java.util.Random;
+
+/**
+ * Generators for the sample expressions used by the benchmarks, self-checks and load generator: flat
+ * expressions of a given number of tokens, and expressions nested to a given depth.
+ *
+ * @author Mike Meyers
+ *
+ */
+final class ExpressionSamples {
+
+	private ExpressionSamples() {
+	}
+
+	/**
+	 * Create an infix expression of roughly the given number of operand and operator tokens,
+	 * made of parenthesized pairs such as (12.5 + 3) * (4 - 0.25)
+	 * @param tokens the number of tokens to generate
+	 * @param random the source of operand values
+	 * @return the infix expression
+	 */
+	static String infixOfSize(int tokens, Random random) {
+		char[] pairOperators = {'+', '-', '*', '/'};
+		char[] joinOperators = {'*', '+', '/', '-'};
+		StringBuilder builder = new StringBuilder(tokens * 6);
+		int groups = Math.max(1, (tokens + 1) / 4);
+		for (int i = 0; i < groups; i++) {
+			if (i > 0) builder.append(' ').append(joinOperators[i % 4]).append(' ');
+			builder.append('(').append(operand(random)).append(' ').append(pairOperators[i % 4]).append(' ')
+					.append(operand(random)).append(')');
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Create a postfix expression of roughly the given number of tokens
+	 * @param tokens the number of tokens to generate
+	 * @param random the source of operand values
+	 * @return the postfix expression
+	 */
+	static String postfixOfSize(int tokens, Random random) {
+		char[] pairOperators = {'+', '-', '*', '/'};
+		char[] joinOperators = {'*', '+', '/', '-'};
+		StringBuilder builder = new StringBuilder(tokens * 6);
+		int groups = Math.max(1, (tokens + 1) / 4);
+		for (int i = 0; i < groups; i++) {
+			builder.append(operand(random)).append(' ').append(operand(random)).append(' ').append(pairOperators[i % 4]);
+			if (i > 0) builder.append(' ').append(joinOperators[i % 4]);
+			builder.append(' ');
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Create an infix expression nested to the given depth, such as ((1 + 1) + 1)
+	 * @param depth the number of nested parentheses
+	 * @return the infix expression
+	 */
+	static String nestedInfix(int depth) {
+		StringBuilder builder = new StringBuilder(depth * 7 + 1);
+		for (int i = 0; i < depth; i++) builder.append('(');
+		builder.append('1');
+		for (int i = 0; i < depth; i++) builder.append(" + 1)");
+		return builder.toString();
+	}
+
+	/**
+	 * Create a postfix expression whose operand Stack reaches the given depth, such as 1 1 1 + +
+	 * @param depth the operand Stack depth
+	 * @return the postfix expression
+	 */
+	static String nestedPostfix(int depth) {
+		StringBuilder builder = new StringBuilder(depth * 4 + 2);
+		for (int i = 0; i <= depth; i++) builder.append("1 ");
+		for (int i = 0; i < depth; i++) builder.append("+ ");
+		return builder.toString();
+	}
+
+	/**
+	 * Generate an operand between 1 and 100 with up to two decimal places
+	 */
+	private static String operand(Random random) {
+		int value = 100 + random.nextInt(9900);
+		return (value % 3 == 0) ? Integer.toString(value / 100) : (value / 100) + "." + (value % 100);
+	}
+}
@@ -0,0 +1,343 @@
+import java.util.Arrays;
+
+/**
+ * A compact expression tree stored in parallel arrays rather than as linked node objects.
+ *
+ * Each node is an index into the arrays. Operator nodes record their operator character and the
+ * indices of their two children; operand nodes record where their token lies in the source
+ * expression, so no operand text is copied while the tree is built. Trees are built by reporting an
+ * expression to them in postfix order (the tree is itself a PostfixSink), and are serialized
+ * back to infix notation in a single linear pass.
+ *
+ * @author Mike Meyers
+ *
+ */
+public final class ExpressionTree implements PostfixSink {
+
+	static final char NUMBER = 'n'; //Operator code of a number leaf
+	static final char VARIABLE = 'v'; //Operator code of a variable leaf
+
+	private CharSequence source; //The expression that operand spans refer to
+	private char[] operator = new char[16]; //Operator character of each node, or NUMBER/VARIABLE for leaves
+	private int[] left = new int[16]; //Left child of each operator node, or the token start of a leaf
+	private int[] right = new int[16]; //Right child of each operator node, or the token end of a leaf
+	private int size = 0; //Number of nodes in the tree
+
+	private int[] pending = new int[16]; //Nodes waiting to become operands, used while building
+	private int pendingCount = 0;
+	private int peakDepth = 0; //Most nodes ever waiting at once: the peak depth of the operand stack
+	private int tokens = 0; //Tokens in the source, once the tree is finished
+
+	/**
+	 * Create an empty tree. Nodes are added by reporting an expression to it in postfix order
+	 */
+	ExpressionTree() {
+	}
+
+	/**
+	 * Build the tree of a postfix expression
+	 * @param postfix the postfix-notated expression
+	 * @return the expression tree
+	 * @throws InvalidNotationFormatExceptionV2 if the expression is found to be improperly formatted
+	 */
+	public static ExpressionTree parsePostfix(CharSequence postfix) throws InvalidNotationFormatExceptionV2 {
+		ExpressionTree tree = new ExpressionTree();
+		NotationLexer lexer = new NotationLexer(postfix);
+		NotationV2.parsePostfix(lexer, tree);
+		tree.finish(lexer.tokenCount());
+		return tree;
+	}
+
+	/**
+	 * Build the tree of an infix expression using the shared shunting-yard pass
+	 * @param infix the infix-notated expression
+	 * @return the expression tree
+	 * @throws InvalidNotationFormatExceptionV2 if the expression is found to be improperly formatted
+	 */
+	public static ExpressionTree parseInfix(CharSequence infix) throws InvalidNotationFormatExceptionV2 {
+		ExpressionTree tree = new ExpressionTree();
+		NotationLexer lexer = new NotationLexer(infix);
+		NotationV2.parseInfix(lexer, tree);
+		tree.finish(lexer.tokenCount());
+		return tree;
+	}
+
+	/**
+	 * Add a leaf for an operand. Only the token's position in the source is recorded
+	 * @param lexer the lexer positioned on the operand token
+	 * @param result unused; every operand is accepted
+	 * @return true
+	 */
+	@Override
+	public boolean operand(NotationLexer lexer, NotationResult result) {
+		source = lexer.source();
+		int node = addNode(lexer.tokenType() == NotationLexer.NUMBER ? NUMBER : VARIABLE,
+				lexer.tokenStart(), lexer.tokenEnd());
+		push(node);
+		return true;
+	}
+
+	/**
+	 * Add an operator node whose children are the two most recent operands
+	 * @param op the operator character
+	 * @param position offset of the operator in the source
+	 * @param result receives MISSING_OPERAND if there are not two operands for the operator
+	 * @return true if the node was added
+	 */
+	@Override
+	public boolean operator(char op, int position, NotationResult result) {
+		if (pendingCount < 2) return result.fail(NotationError.MISSING_OPERAND, position);
+		int rightChild = pending[--pendingCount];
+		int leftChild = pending[--pendingCount];
+		push(addNode(op, leftChild, rightChild));
+		return true;
+	}
+
+	/**
+	 * Confirm the expression reduced to a single tree
+	 * @param tokens the number of tokens the parser read from the source
+	 * @throws InvalidNotationFormatExceptionV2 if the expression did not reduce to exactly one value; an
+	 * operand left over is reported at the start of the second subtree, the first that nothing combined
+	 */
+	void finish(int tokens) throws InvalidNotationFormatExceptionV2 {
+		if (pendingCount != 1) throw new InvalidNotationFormatExceptionV2(NotationError.unreduced(pendingCount),
+				pendingCount == 0 ? -1 : left[leftmostLeaf(pending[1])]);
+		pending = null;
+		this.tokens = tokens;
+	}
+
+	/**
+	 * Find the first token of a subtree by following left children down to a leaf
+	 * @param node the root of the subtree
+	 * @return the subtree's leftmost leaf
+	 */
+	private int leftmostLeaf(int node) {
+		while (!isOperand(node)) node = left[node];
+		return node;
+	}
+
+	/**
+	 * Determine the number of nodes in the tree
+	 * @return the node count
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Determine how many tokens the tree was parsed from. Braces and operands both count, so this can
+	 * be more than the node count
+	 * @return the number of tokens in the source
+	 */
+	public int tokenCount() {
+		return tokens;
+	}
+
+	/**
+	 * Determine the most operands that were waiting at once while the tree was built, which is the
+	 * deepest the operand stack grows when the expression is evaluated
+	 * @return the peak depth of the operand stack
+	 */
+	public int peakDepth() {
+		return peakDepth;
+	}
+
+	/**
+	 * Retrieve the root of the tree. Nodes are added children first, so the root is always the last node
+	 * @return the index of the root node
+	 */
+	public int root() {
+		return size - 1;
+	}
+
+	/**
+	 * Determine if a node is an operand (a leaf of the tree)
+	 * @param node the node index
+	 * @return true if the node is a number or variable
+	 */
+	public boolean isOperand(int node) {
+		return operator[node] == NUMBER || operator[node] == VARIABLE;
+	}
+
+	/**
+	 * Determine if a node is a variable
+	 * @param node the node index
+	 * @return true if the node is a variable
+	 */
+	public boolean isVariable(int node) {
+		return operator[node] == VARIABLE;
+	}
+
+	/**
+	 * Retrieve the operator of an operator node
+	 * @param node the node index
+	 * @return one of + - * / ^
+	 */
+	public char operator(int node) {
+		return operator[node];
+	}
+
+	/**
+	 * Retrieve the left child of an operator node
+	 * @param node the node index
+	 * @return the index of the left child
+	 */
+	public int left(int node) {
+		return left[node];
+	}
+
+	/**
+	 * Retrieve the right child of an operator node
+	 * @param node the node index
+	 * @return the index of the right child
+	 */
+	public int right(int node) {
+		return right[node];
+	}
+
+	/**
+	 * Retrieve where an operand node's token starts in the source
+	 * @param node the node index
+	 * @return the offset of the operand's first character
+	 */
+	public int operandStart(int node) {
+		return left[node];
+	}
+
+	/**
+	 * Copy the text of an operand node from the source
+	 * @param node the node index
+	 * @return the operand's text
+	 */
+	public String operandText(int node) {
+		return source.subSequence(left[node], right[node]).toString();
+	}
+
+	/**
+	 * Read the numeric value of an operand node straight from the source
+	 * @param node the node index
+	 * @return the operand's value
+	 */
+	public double operandValue(int node) {
+		return NumberParser.parse(source, left[node], right[node]);
+	}
+
+	/**
+	 * Serialize the tree to infix notation in a single linear pass
+	 * @param minimalParentheses true to insert only the parentheses that precedence and associativity
+	 * require; false to parenthesize every + and - the way convertPostfixToInfix always has
+	 * @return the infix-notated expression
+	 */
+	public String toInfix(boolean minimalParentheses) {
+		StringBuilder builder = new StringBuilder(source.length() * 2 + 16);
+		appendInfix(builder, minimalParentheses);
+		return builder.toString();
+	}
+
+	/**
+	 * Serialize the tree to infix notation in a single linear pass. The traversal uses its own Stack,
+	 * so arbitrarily deep trees cannot overflow the call stack
+	 * @param builder the StringBuilder to append the infix-notated expression to
+	 * @param minimalParentheses true to insert only the parentheses that precedence and associativity
+	 * require; false to parenthesize every + and - the way convertPostfixToInfix always has
+	 */
+	public void appendInfix(StringBuilder builder, boolean minimalParentheses) {
+		//Each entry is a node index, shifted left two bits, with its visit phase in the low bits
+		int[] stack = new int[16];
+		boolean[] wrapped = new boolean[16];
+		int top = 0;
+		stack[0] = root() << 2;
+		wrapped[0] = !minimalParentheses && isAdditive(operator[root()]);
+
+		while (top >= 0) {
+			int node = stack[top] >>> 2;
+			int phase = stack[top] & 3;
+
+			//Operands are copied straight from the source
+			if (isOperand(node)) {
+				builder.append(source, left[node], right[node]);
+				top--;
+				continue;
+			}
+
+			if (top + 1 == stack.length) {
+				stack = Arrays.copyOf(stack, stack.length * 2);
+				wrapped = Arrays.copyOf(wrapped, wrapped.length * 2);
+			}
+
+			switch (phase) {
+				case 0 : //Open the node and visit its left child
+					if (wrapped[top]) builder.append('(');
+					stack[top] = (node << 2) | 1;
+					stack[++top] = left[node] << 2;
+					wrapped[top] = needsParentheses(node, left[node], true, minimalParentheses);
+					break;
+				case 1 : //Write the operator and visit the right child
+					builder.append(' ').append(operator[node]).append(' ');
+					stack[top] = (node << 2) | 2;
+					stack[++top] = right[node] << 2;
+					wrapped[top] = needsParentheses(node, right[node], false, minimalParentheses);
+					break;
+				default : //Close the node
+					if (wrapped[top]) builder.append(')');
+					top--;
+					break;
+			}
+		}
+	}
+
+	/**
+	 * Decide whether a child must be parenthesized when written inside its parent
+	 * @param parent the parent node
+	 * @param child the child node
+	 * @param isLeft true if the child is the parent's left operand
+	 * @param minimal true for minimal parentheses, false for the legacy convertPostfixToInfix format
+	 * @return true if the child must be wrapped in parentheses
+	 */
+	private boolean needsParentheses(int parent, int child, boolean isLeft, boolean minimal) {
+		if (isOperand(child)) return false;
+
+		//The legacy format wraps every addition and subtraction, wherever it appears
+		if (!minimal) return isAdditive(operator[child]);
+
+		int parentPrecedence = NotationV2.precedence(operator[parent]);
+		int childPrecedence = NotationV2.precedence(operator[child]);
+		if (childPrecedence != parentPrecedence) return childPrecedence < parentPrecedence;
+
+		//At equal precedence, ^ groups right to left and every other operator groups left to right,
+		//so only a child on the opposite side from the grouping needs parentheses
+		return (operator[parent] == '^') ? isLeft : !isLeft;
+	}
+
+	/**
+	 * Determine if an operator is + or -
+	 */
+	private static boolean isAdditive(char op) {
+		return op == '+' || op == '-';
+	}
+
+	/**
+	 * Append a node to the arrays, growing them as needed
+	 * @return the index of the new node
+	 */
+	private int addNode(char op, int leftValue, int rightValue) {
+		if (size == operator.length) {
+			operator = Arrays.copyOf(operator, size * 2);
+			left = Arrays.copyOf(left, size * 2);
+			right = Arrays.copyOf(right, size * 2);
+		}
+		operator[size] = op;
+		left[size] = leftValue;
+		right[size] = rightValue;
+		return size++;
+	}
+
+	/**
+	 * Push a node onto the Stack of nodes waiting to become operands
+	 */
+	private void push(int node) {
+		if (pendingCount == pending.length) pending = Arrays.copyOf(pending, pendingCount * 2);
+		pending[pendingCount++] = node;
+		if (pendingCount > peakDepth) peakDepth = pendingCount;
+	}
+}
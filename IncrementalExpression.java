@@ -0,0 +1,624 @@
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * An infix expression that is edited in place and re-evaluated after each edit, for editors that evaluate
+ * a long formula on every keystroke.
+ *
+ * The expression keeps its tokens (their offsets, types and number values) and the tree of its last
+ * evaluation, with each node's value. An edit re-lexes only the tokens it touches: lexing starts at the
+ * first token that ends at or after the edit and stops as soon as it reaches a token starting where an
+ * old token started after the edit, since the lexer only ever reads forward and everything from there on
+ * is unchanged. Numbers outside the edited region are never parsed again.
+ *
+ * Neither the text nor the token offsets are shifted when an edit changes the length of the text. The
+ * text is held in a gap buffer, and the tokens in arrays with a gap of their own. Both gaps sit at the
+ * most recent edit. Tokens after the gap record their offsets from the end of the text, so they stay
+ * correct whatever happens before them. Moving a gap costs the distance it moves, so a run of edits in
+ * one place costs only the edits, however long the document is.
+ *
+ * What an evaluation costs after the edits depends on what they changed:
+ *
+ * - If only the values of numbers changed (typing or deleting digits, or changing whitespace), the tree
+ *   keeps its shape. Each changed number's new value is carried up through its ancestors, stopping at the
+ *   first one whose value did not change. The cost is the number of ancestors whose value changes, which
+ *   for a balanced tree is logarithmic in the size of the expression, but for a left-deep chain such as
+ *   a + b + c + ... can be every node above the edit. The tree cannot be rebalanced to avoid that,
+ *   since floating-point addition and multiplication are not associative and the value would change.
+ * - Otherwise (an operator, brace or variable was added or removed, or numbers appeared or merged) the
+ *   stored tokens are replayed through NotationV2's shunting-yard pass to rebuild the tree. That is
+ *   linear in the number of tokens, though no character is scanned and no number is parsed again.
+ *
+ * So an edit is proportional to its own size, and evaluating it is proportional to the values it
+ * changes, except for edits that change the structure of the expression.
+ *
+ * Errors are reported exactly as evaluateInfixExpression would report them for the same text, with the
+ * same code and position. Stray characters and malformed numbers are kept as invalid tokens, so an edit
+ * can still be re-lexed locally while the text is not yet a valid expression.
+ *
+ * An expression is not thread-safe.
+ *
+ * Usage:
+ *
+ *     IncrementalExpression expr = new IncrementalExpression("(1 + 2) * 3");
+ *     expr.evaluate(); //9.0
+ *     expr.edit(6, 0, "5"); //(1 + 25) * 3
+ *     expr.evaluate(); //78.0
+ *
+ * @author Mike Meyers
+ *
+ */
+public final class IncrementalExpression {
+
+	private static final char NUMBER = 'n'; //Operator code of a number leaf
+
+	private final GapText text = new GapText(); //The current text of the expression
+
+	//The tokens of the text in order, with a gap at the last edit. Tokens before the gap record their
+	//offsets from the start of the text and tokens after it from the end. Invalid tokens have the negated
+	//NotationError code as their type
+	private int[] starts = new int[16]; //Offset of the first character of each token
+	private int[] ends = new int[16]; //Offset one past the last character of each token
+	private int[] types = new int[16]; //NotationLexer type of each token
+	private char[] chars = new char[16]; //First character of each token (the operator or brace code)
+	private double[] values = new double[16]; //Value of each NUMBER token
+	private int count = 0; //Number of tokens
+	private int gapStart = 0; //Index of the first slot of the gap, which is also the index of the next token
+	private int gapEnd = 16; //Index of the first slot after the gap
+
+	//Tokens lexed by the current edit, before they are spliced in
+	private int[] newStarts = new int[16];
+	private int[] newEnds = new int[16];
+	private int[] newTypes = new int[16];
+	private char[] newChars = new char[16];
+	private double[] newValues = new double[16];
+	private int newCount = 0;
+
+	private final NotationLexer lexer = new NotationLexer(); //Lexes the edited region
+	private int lexedStart; //Offset of the token most recently lexed
+	private int lexedEnd; //Offset one past the token most recently lexed
+
+	//The tree of the last evaluation, with nodes in postfix order so the root is the last node
+	private char[] operators = new char[16]; //Operator of each node, or NUMBER for a leaf
+	private int[] lefts = new int[16]; //Left child of each operator node, or the token of a leaf
+	private int[] rights = new int[16]; //Right child of each operator node
+	private int[] parents = new int[16]; //Parent of each node, or -1 for the root
+	private double[] nodeValues = new double[16]; //Value of each node
+	private int nodeCount = 0;
+	private int[] leaves = new int[16]; //Leaf node of each NUMBER token
+
+	private final TokenReplay replay = new TokenReplay(); //Feeds the stored tokens to the shunting-yard pass
+	private final TreeBuilder builder = new TreeBuilder(); //Builds the tree from the shunting-yard pass
+	private final OperatorStack pendingOperators = new OperatorStack(); //Operator Stack for the shunting-yard pass
+	private int[] pending = new int[16]; //Nodes waiting to become operands while the tree is built
+	private int pendingCount = 0;
+
+	private boolean rebuild = true; //True if the tree must be rebuilt before the next evaluation
+	private InvalidNotationFormatExceptionV2 failure; //Why the current tree could not be built, or null
+	private final NotationResult problem = new NotationResult(); //Receives the problem found while building the tree
+	private int[] dirty = new int[16]; //Tokens whose new values have not yet reached the tree
+	private int dirtyCount = 0;
+
+	/**
+	 * Create an expression, lexing all of its text
+	 * @param infix the initial infix-notated text
+	 */
+	public IncrementalExpression(CharSequence infix) {
+		edit(0, 0, infix);
+	}
+
+	/**
+	 * Replace a range of the text. Only the tokens the edit touches are lexed again; evaluation is
+	 * left until the next call to evaluate()
+	 * @param offset offset of the first character to replace
+	 * @param deleted number of characters to remove
+	 * @param inserted the text to insert in their place
+	 * @throws IndexOutOfBoundsException if the range is outside the text
+	 */
+	public void edit(int offset, int deleted, CharSequence inserted) {
+		Objects.checkFromIndexSize(offset, deleted, text.length());
+
+		//A token ending exactly at the edit is lexed again too, since the edit may extend it. Every token
+		//from there on is moved after the token gap, so its offset follows the end of the text
+		int first = firstEndingAtOrAfter(offset);
+		int from = (first < count) ? Math.min(start(first), offset) : offset;
+		moveGap(first);
+
+		text.replace(offset, deleted, inserted);
+		int editEnd = offset + inserted.length(); //End of the inserted text in the new text
+
+		int resume = first; //Old token where the new tokens rejoin the old ones
+		boolean rejoined = false;
+		newCount = 0;
+		lexer.reset(text, from, text.length());
+
+		for (int type = scan(); type != NotationLexer.END; type = scan()) {
+			//Past the edit, every old token is unchanged from the first one starting where this one does
+			if (lexedStart >= editEnd) {
+				while (resume < count && start(resume) < lexedStart) resume++;
+				if (resume < count && start(resume) == lexedStart) {
+					rejoined = true;
+					break;
+				}
+			}
+			addNewToken(type);
+		}
+		splice(first, rejoined ? resume : count);
+	}
+
+	/**
+	 * Evaluate the expression as it now stands
+	 * @return the value of the expression
+	 * @throws InvalidNotationFormatExceptionV2 if the expression is improperly formatted
+	 */
+	public double evaluate() throws InvalidNotationFormatExceptionV2 {
+		if (rebuild) buildTree();
+		if (failure != null) throw failure;
+		return update();
+	}
+
+	/**
+	 * Evaluate the expression, reporting invalid input in a result rather than throwing it
+	 * @param result receives the value, or the error code, position and reason of the first problem found
+	 * @return true if the expression was evaluated, false if it was invalid
+	 */
+	public boolean tryEvaluate(NotationResult result) {
+		if (rebuild) buildTree();
+		if (failure != null) {
+			result.fail(failure);
+			return false;
+		}
+		result.succeed(update());
+		return true;
+	}
+
+	/**
+	 * Bring a successfully built tree up to date with the numbers edited since the last evaluation.
+	 * Each changed number is carried up the tree until a value stops changing
+	 * @return the value of the expression
+	 */
+	private double update() {
+		for (int i = 0; i < dirtyCount; i++) {
+			int node = leaves[dirty[i]];
+			nodeValues[node] = values[slot(dirty[i])];
+			for (int parent = parents[node]; parent >= 0; parent = parents[parent]) {
+				double value = NotationV2.calculate(nodeValues[lefts[parent]], nodeValues[rights[parent]], operators[parent]);
+				if (Double.doubleToRawLongBits(value) == Double.doubleToRawLongBits(nodeValues[parent])) break;
+				nodeValues[parent] = value;
+			}
+		}
+		dirtyCount = 0;
+		return nodeValues[nodeCount - 1];
+	}
+
+	/**
+	 * Determine the length of the text
+	 * @return the number of characters in the expression
+	 */
+	public int length() {
+		return text.length();
+	}
+
+	/**
+	 * Determine the number of tokens in the text, counting each invalid character as one
+	 * @return the token count
+	 */
+	public int tokenCount() {
+		return count;
+	}
+
+	/**
+	 * Copy the current text
+	 * @return the infix-notated expression
+	 */
+	@Override
+	public String toString() {
+		return text.toString();
+	}
+
+	/**
+	 * Find the array slot of a token
+	 * @param token the token index
+	 * @return the index of the token's slot in the token arrays
+	 */
+	private int slot(int token) {
+		return (token < gapStart) ? token : token + (gapEnd - gapStart);
+	}
+
+	/**
+	 * Determine where a token begins
+	 * @param token the token index
+	 * @return the offset of the token's first character in the current text
+	 */
+	private int start(int token) {
+		return (token < gapStart) ? starts[token] : starts[token + (gapEnd - gapStart)] + text.length();
+	}
+
+	/**
+	 * Determine where a token ends
+	 * @param token the token index
+	 * @return the offset one past the token's last character in the current text
+	 */
+	private int end(int token) {
+		return (token < gapStart) ? ends[token] : ends[token + (gapEnd - gapStart)] + text.length();
+	}
+
+	/**
+	 * Find the first token that ends at or after an offset
+	 * @param offset the offset in the text
+	 * @return the token index, or the token count if every token ends before the offset
+	 */
+	private int firstEndingAtOrAfter(int offset) {
+		int low = 0;
+		int high = count;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (end(middle) < offset) low = middle + 1;
+			else high = middle;
+		}
+		return low;
+	}
+
+	/**
+	 * Move the token gap so it starts at a given token, converting the offsets of the tokens it passes
+	 * between offsets from the start and offsets from the end of the text
+	 * @param token the index the gap should start at
+	 */
+	private void moveGap(int token) {
+		int length = text.length();
+		while (gapStart > token) {
+			//The token before the gap moves to after it
+			gapStart--;
+			gapEnd--;
+			moveSlot(gapStart, gapEnd, -length);
+		}
+		while (gapStart < token) {
+			//The token after the gap moves to before it
+			moveSlot(gapEnd, gapStart, length);
+			gapStart++;
+			gapEnd++;
+		}
+	}
+
+	/**
+	 * Move one token between slots, adjusting its offsets
+	 */
+	private void moveSlot(int from, int to, int adjustment) {
+		starts[to] = starts[from] + adjustment;
+		ends[to] = ends[from] + adjustment;
+		types[to] = types[from];
+		chars[to] = chars[from];
+		values[to] = values[from];
+	}
+
+	/**
+	 * Lex the next token of the edited text. A character that cannot start a token, or a malformed
+	 * number, becomes an invalid token ending just past the problem, and lexing carries on after it
+	 * @return the token type, the negated NotationError code of an invalid token, or END
+	 */
+	private int scan() {
+		int type = lexer.scan();
+		lexedStart = lexer.tokenStart();
+		if (type != NotationLexer.INVALID) {
+			lexedEnd = lexer.tokenEnd();
+			return type;
+		}
+		lexedEnd = lexer.errorPosition() + 1;
+		lexer.reset(text, lexedEnd, text.length());
+		return -lexer.error();
+	}
+
+	/**
+	 * Record the token just lexed as one of the edit's new tokens
+	 * @param type the token type, or the negated error code of an invalid token
+	 */
+	private void addNewToken(int type) {
+		if (newCount == newStarts.length) {
+			newStarts = Arrays.copyOf(newStarts, newCount * 2);
+			newEnds = Arrays.copyOf(newEnds, newCount * 2);
+			newTypes = Arrays.copyOf(newTypes, newCount * 2);
+			newChars = Arrays.copyOf(newChars, newCount * 2);
+			newValues = Arrays.copyOf(newValues, newCount * 2);
+		}
+		newStarts[newCount] = lexedStart;
+		newEnds[newCount] = lexedEnd;
+		newTypes[newCount] = type;
+		newChars[newCount] = text.charAt(lexedStart);
+		newValues[newCount] = (type == NotationLexer.NUMBER) ? NumberParser.parse(text, lexedStart, lexedEnd) : 0;
+		newCount++;
+	}
+
+	/**
+	 * Replace old tokens with the edit's new tokens, and note what the next evaluation must redo.
+	 * The token gap already starts at the first old token replaced
+	 * @param first the first old token replaced
+	 * @param resume the first old token kept after the edit
+	 */
+	private void splice(int first, int resume) {
+		int removed = resume - first;
+
+		//If the tokens keep their types and operators, the tree keeps its shape and only numbers change
+		boolean sameShape = !rebuild && failure == null && newCount == removed;
+		for (int i = 0; sameShape && i < newCount; i++) {
+			int old = slot(first + i);
+			sameShape = newTypes[i] == types[old] && (types[old] == NotationLexer.NUMBER || newChars[i] == chars[old]);
+		}
+		for (int i = 0; sameShape && i < newCount; i++) {
+			if (Double.doubleToRawLongBits(newValues[i]) != Double.doubleToRawLongBits(values[slot(first + i)])) {
+				markDirty(first + i);
+			}
+		}
+
+		//Drop the old tokens into the gap, then fill it with the new ones
+		gapEnd += removed;
+		count -= removed;
+		if (gapEnd - gapStart < newCount) growTokens(newCount);
+		for (int i = 0; i < newCount; i++) {
+			starts[gapStart] = newStarts[i];
+			ends[gapStart] = newEnds[i];
+			types[gapStart] = newTypes[i];
+			chars[gapStart] = newChars[i];
+			values[gapStart] = newValues[i];
+			gapStart++;
+		}
+		count += newCount;
+
+		if (!sameShape || dirtyCount > nodeCount / 2) {
+			rebuild = true;
+			dirtyCount = 0;
+		}
+	}
+
+	/**
+	 * Grow the token arrays so the gap holds at least a given number of tokens
+	 * @param needed the number of tokens about to be inserted
+	 */
+	private void growTokens(int needed) {
+		int capacity = Math.max(starts.length * 2, count + needed + 16);
+		int after = starts.length - gapEnd; //Tokens after the gap
+		int newGapEnd = capacity - after;
+		starts = moveTail(Arrays.copyOf(starts, capacity), gapEnd, newGapEnd, after);
+		ends = moveTail(Arrays.copyOf(ends, capacity), gapEnd, newGapEnd, after);
+		types = moveTail(Arrays.copyOf(types, capacity), gapEnd, newGapEnd, after);
+		chars = Arrays.copyOf(chars, capacity);
+		System.arraycopy(chars, gapEnd, chars, newGapEnd, after);
+		values = Arrays.copyOf(values, capacity);
+		System.arraycopy(values, gapEnd, values, newGapEnd, after);
+		gapEnd = newGapEnd;
+	}
+
+	/**
+	 * Move the tokens after the gap to the end of a grown array
+	 * @return the array
+	 */
+	private static int[] moveTail(int[] array, int from, int to, int length) {
+		System.arraycopy(array, from, array, to, length);
+		return array;
+	}
+
+	/**
+	 * Note that a number's new value must be carried up the tree
+	 */
+	private void markDirty(int token) {
+		if (dirtyCount == dirty.length) dirty = Arrays.copyOf(dirty, dirtyCount * 2);
+		dirty[dirtyCount++] = token;
+	}
+
+	/**
+	 * Rebuild the tree by replaying the stored tokens through the shunting-yard pass, evaluating every
+	 * node as it is added. A failure is kept and reported by each evaluation until the next edit
+	 */
+	private void buildTree() {
+		nodeCount = 0;
+		pendingCount = 0;
+		pendingOperators.clear();
+		if (leaves.length < count) leaves = new int[Math.max(count, leaves.length * 2)];
+		failure = null;
+		if (!NotationV2.parseInfix(replay.restart(), pendingOperators, builder, problem)) failure = problem.exception();
+		else if (pendingCount != 1) failure = new InvalidNotationFormatExceptionV2(NotationError.unreduced(pendingCount),
+				pendingCount == 0 ? -1 : start(leftmostToken(pending[1])));
+		rebuild = false;
+		dirtyCount = 0;
+	}
+
+	/**
+	 * Find the first token of a subtree by following left children down to a leaf
+	 * @param node the root of the subtree
+	 * @return the token of the subtree's leftmost leaf
+	 */
+	private int leftmostToken(int node) {
+		while (operators[node] != NUMBER) node = lefts[node];
+		return lefts[node];
+	}
+
+	/**
+	 * Append a node to the tree, growing its arrays as needed
+	 * @return the index of the new node
+	 */
+	private int addNode(char op, int left, int right, double value) {
+		if (nodeCount == operators.length) {
+			operators = Arrays.copyOf(operators, nodeCount * 2);
+			lefts = Arrays.copyOf(lefts, nodeCount * 2);
+			rights = Arrays.copyOf(rights, nodeCount * 2);
+			parents = Arrays.copyOf(parents, nodeCount * 2);
+			nodeValues = Arrays.copyOf(nodeValues, nodeCount * 2);
+		}
+		operators[nodeCount] = op;
+		lefts[nodeCount] = left;
+		rights[nodeCount] = right;
+		parents[nodeCount] = -1;
+		nodeValues[nodeCount] = value;
+		if (pendingCount == pending.length) pending = Arrays.copyOf(pending, pendingCount * 2);
+		pending[pendingCount++] = nodeCount;
+		return nodeCount++;
+	}
+
+	/**
+	 * Receives the tree in postfix order from the shunting-yard pass
+	 */
+	private final class TreeBuilder implements PostfixSink {
+
+		/**
+		 * Add a leaf for a number, using its stored value
+		 * @param lexer the replay, positioned on the operand token
+		 * @param result receives UNBOUND_VARIABLE if the operand is a variable, which has no value
+		 * @return true if the leaf was added
+		 */
+		@Override
+		public boolean operand(NotationLexer lexer, NotationResult result) {
+			if (lexer.tokenType() != NotationLexer.NUMBER) return result.fail(NotationError.UNBOUND_VARIABLE, lexer.tokenStart());
+			int token = replay.index;
+			leaves[token] = addNode(NUMBER, token, -1, lexer.numberValue());
+			return true;
+		}
+
+		/**
+		 * Add an operator node over the two most recent operands, with its value
+		 * @param op the operator character
+		 * @param position offset of the operator in the text
+		 * @param result receives MISSING_OPERAND if there are not two operands for the operator
+		 * @return true if the node was added
+		 */
+		@Override
+		public boolean operator(char op, int position, NotationResult result) {
+			if (pendingCount < 2) return result.fail(NotationError.MISSING_OPERAND, position);
+			int right = pending[--pendingCount];
+			int left = pending[--pendingCount];
+			int node = addNode(op, left, right, NotationV2.calculate(nodeValues[left], nodeValues[right], op));
+			parents[left] = node;
+			parents[right] = node;
+			return true;
+		}
+	}
+
+	/**
+	 * A lexer that reads back the stored tokens instead of scanning the text, so the shared shunting-yard
+	 * pass validates and parses them exactly as it would the text itself
+	 */
+	private final class TokenReplay extends NotationLexer {
+
+		private int index; //Index of the current token, or the token count once the tokens are exhausted
+		private int slot; //Array slot of the current token
+
+		/**
+		 * Position the replay before the first token
+		 * @return this replay, for chaining
+		 */
+		TokenReplay restart() {
+			index = -1;
+			return this;
+		}
+
+		/**
+		 * Advance to the next stored token
+		 * @return the type of the token, INVALID if it is invalid as the lexer found it, or END once every
+		 * token has been read
+		 */
+		@Override
+		public int scan() {
+			if (index < count) index++;
+			if (index == count) return END;
+			slot = slot(index);
+			if (types[slot] < 0) return invalid(-types[slot], end(index) - 1);
+			return types[slot];
+		}
+
+		@Override
+		public int tokenType() {
+			return (index < count) ? types[slot] : END;
+		}
+
+		@Override
+		public int tokenStart() {
+			return (index < count) ? start(index) : text.length();
+		}
+
+		@Override
+		public int tokenEnd() {
+			return (index < count) ? end(index) : text.length();
+		}
+
+		@Override
+		public char tokenChar() {
+			return (index < count) ? chars[slot] : 0;
+		}
+
+		@Override
+		public CharSequence source() {
+			return text;
+		}
+
+		@Override
+		public double numberValue() {
+			return values[slot];
+		}
+	}
+
+	/**
+	 * The text of the expression as a gap buffer: the characters before and after the most recent edit,
+	 * with free space between them, so an edit only moves the characters between it and the last one
+	 */
+	private static final class GapText implements CharSequence {
+
+		private char[] chars = new char[64]; //The characters, with the gap between gapStart and gapEnd
+		private int gapStart = 0; //Index of the first free slot, which is also the offset of the next character
+		private int gapEnd = 64; //Index of the first character after the gap
+
+		/**
+		 * Replace a range of the text
+		 * @param offset offset of the first character to replace
+		 * @param deleted number of characters to remove
+		 * @param inserted the text to insert in their place
+		 */
+		void replace(int offset, int deleted, CharSequence inserted) {
+			//Move the gap to the edit, then widen it over the deleted characters
+			if (offset < gapStart) {
+				int moved = gapStart - offset;
+				System.arraycopy(chars, offset, chars, gapEnd - moved, moved);
+				gapStart -= moved;
+				gapEnd -= moved;
+			}
+			else if (offset > gapStart) {
+				int moved = offset - gapStart;
+				System.arraycopy(chars, gapEnd, chars, gapStart, moved);
+				gapStart += moved;
+				gapEnd += moved;
+			}
+			gapEnd += deleted;
+
+			int needed = inserted.length();
+			if (gapEnd - gapStart < needed) {
+				int after = chars.length - gapEnd;
+				char[] grown = new char[Math.max(chars.length * 2, gapStart + needed + after + 64)];
+				System.arraycopy(chars, 0, grown, 0, gapStart);
+				System.arraycopy(chars, gapEnd, grown, grown.length - after, after);
+				gapEnd = grown.length - after;
+				chars = grown;
+			}
+			for (int i = 0; i < needed; i++) chars[gapStart++] = inserted.charAt(i);
+		}
+
+		@Override
+		public int length() {
+			return chars.length - (gapEnd - gapStart);
+		}
+
+		@Override
+		public char charAt(int index) {
+			return chars[(index < gapStart) ? index : index + (gapEnd - gapStart)];
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			return toString().substring(start, end);
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder builder = new StringBuilder(length());
+			builder.append(chars, 0, gapStart);
+			builder.append(chars, gapEnd, chars.length - gapEnd);
+			return builder.toString();
+		}
+	}
+}
@@ -0,0 +1,70 @@
+/**
+ * Thrown when an expression is improperly formatted.
+ * 
+ * Exceptions raised by NotationV2 itself carry a NotationError code and the position of the offending token,
+ * and are created without a stack trace: the position identifies the problem, and skipping the trace keeps
+ * rejecting invalid input cheap. Their message is only assembled if it is asked for.
+ */
+@SuppressWarnings("serial")
+class InvalidNotationFormatExceptionV2 extends RuntimeException {
+	
+	private final int error; //The NotationError code describing the problem
+	private final int position; //Offset in the expression where the problem was found, or -1 if unknown
+	private final String reason; //Description of the problem without its position, or null for a plain message
+	
+	public InvalidNotationFormatExceptionV2() {
+		this("The entered expression contains an invalid notation and cannot be processed.");
+	}
+	
+	public InvalidNotationFormatExceptionV2(String message) {
+		super(message);
+		error = NotationError.MALFORMED;
+		position = -1;
+		reason = null;
+	}
+	
+	public InvalidNotationFormatExceptionV2(int error, int position) {
+		this(NotationError.describe(error), error, position);
+	}
+	
+	public InvalidNotationFormatExceptionV2(String reason, int error, int position) {
+		super(null, null, false, false);
+		this.error = error;
+		this.position = position;
+		this.reason = reason;
+	}
+	
+	/**
+	 * Describe the problem, including its position if known
+	 * @return the exception message
+	 */
+	@Override
+	public String getMessage() {
+		if (reason == null) return super.getMessage();
+		return (position < 0) ? reason : reason + " (position " + position + ")";
+	}
+	
+	/**
+	 * Determine what kind of problem was found
+	 * @return the NotationError code of the problem
+	 */
+	public int getError() {
+		return error;
+	}
+	
+	/**
+	 * Determine where the problem was found
+	 * @return the offset in the expression of the offending token, or -1 if unknown
+	 */
+	public int getPosition() {
+		return position;
+	}
+	
+	/**
+	 * Describe the problem without its position
+	 * @return the reason the expression was rejected
+	 */
+	public String getReason() {
+		return (reason == null) ? super.getMessage() : reason;
+	}
+}
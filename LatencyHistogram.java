@@ -0,0 +1,133 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread-safe histogram of latencies in nanoseconds, with log-linear buckets.
+ *
+ * Values below 16 each have their own bucket; above that, every power of two is divided into 16 buckets,
+ * so any recorded value is reported within about 6% of its true value. The histogram covers every
+ * positive long in under a thousand buckets, and recording a value is a few arithmetic operations and
+ * one atomic increment, with no allocation.
+ *
+ * @author Mike Meyers
+ *
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BITS = 4; //Each power of two is split into 2^SUB_BITS buckets
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+	private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS); //Values recorded in each bucket
+	private final LongAdder total = new LongAdder(); //Sum of every recorded value
+	private final LongAdder count = new LongAdder(); //Number of recorded values
+
+	/**
+	 * Record one latency
+	 * @param nanos the latency in nanoseconds; negative values are recorded as 0
+	 */
+	public void record(long nanos) {
+		long value = Math.max(0, nanos);
+		counts.incrementAndGet(bucketOf(value));
+		total.add(value);
+		count.increment();
+	}
+
+	/**
+	 * Determine how many latencies have been recorded
+	 * @return the number of recorded values
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * Determine the mean latency
+	 * @return the mean in nanoseconds, or 0 if nothing has been recorded
+	 */
+	public double getMean() {
+		long n = count.sum();
+		return (n == 0) ? 0 : (double) total.sum() / n;
+	}
+
+	/**
+	 * Estimate the latency at a percentile
+	 * @param percentile the percentile, from 0 to 100
+	 * @return the upper bound of the bucket holding the percentile, in nanoseconds, or 0 if nothing has been recorded
+	 */
+	public long getPercentile(double percentile) {
+		long[] snapshot = snapshot();
+		long n = 0;
+		for (long c : snapshot) n += c;
+		if (n == 0) return 0;
+
+		long rank = (long) Math.ceil(percentile / 100.0 * n);
+		long seen = 0;
+		for (int bucket = 0; bucket < BUCKETS; bucket++) {
+			seen += snapshot[bucket];
+			if (seen >= Math.max(1, rank)) return upperBound(bucket);
+		}
+		return upperBound(BUCKETS - 1);
+	}
+
+	/**
+	 * Estimate the largest latency recorded
+	 * @return the upper bound of the highest non-empty bucket, in nanoseconds, or 0 if nothing has been recorded
+	 */
+	public long getMax() {
+		for (int bucket = BUCKETS - 1; bucket >= 0; bucket--) {
+			if (counts.get(bucket) > 0) return upperBound(bucket);
+		}
+		return 0;
+	}
+
+	/**
+	 * Discard every recorded value
+	 */
+	public void reset() {
+		for (int bucket = 0; bucket < BUCKETS; bucket++) counts.set(bucket, 0);
+		total.reset();
+		count.reset();
+	}
+
+	/**
+	 * Summarize the histogram in microseconds
+	 * @return the count, mean and the 50th, 90th, 99th and 99.9th percentiles and maximum
+	 */
+	@Override
+	public String toString() {
+		return String.format("count=%d mean=%.1fus p50=%.1fus p90=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus",
+				getCount(), getMean() / 1000, getPercentile(50) / 1000.0, getPercentile(90) / 1000.0,
+				getPercentile(99) / 1000.0, getPercentile(99.9) / 1000.0, getMax() / 1000.0);
+	}
+
+	/**
+	 * Copy the bucket counts, so a percentile is computed from one consistent-enough view
+	 */
+	private long[] snapshot() {
+		long[] snapshot = new long[BUCKETS];
+		for (int bucket = 0; bucket < BUCKETS; bucket++) snapshot[bucket] = counts.get(bucket);
+		return snapshot;
+	}
+
+	/**
+	 * Find the bucket a value belongs in
+	 */
+	static int bucketOf(long value) {
+		if (value < SUB_BUCKETS) return (int) value;
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+	}
+
+	/**
+	 * Find the largest value a bucket holds
+	 */
+	static long upperBound(int bucket) {
+		if (bucket < SUB_BUCKETS) return bucket;
+		int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+		int sub = bucket % SUB_BUCKETS;
+		long lower = (long) (SUB_BUCKETS + sub) << (exponent - SUB_BITS);
+		return lower + (1L << (exponent - SUB_BITS)) - 1;
+	}
+}
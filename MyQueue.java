@@ -89,6 +89,9 @@ public class MyQueue<T> implements QueueInterface<T>{
 			//Remove the existing first Node by promoting the second Node to the first position
 			firstNode = firstNode.nextNode;
 			
+			//If that was the last Node, let go of it so the removed data can be collected
+			if (firstNode == null) lastNode = null;
+			
 			//Decrement the Node counter to reflect removal
 			nodeCount--;
 			
@@ -144,24 +147,22 @@ public class MyQueue<T> implements QueueInterface<T>{
 	 */
 	@Override
 	public String toString(String delimiter) {
-		//Create empty String object for returning
-		String returnString = "";
+		//Create empty StringBuilder for building the return
+		StringBuilder returnString = new StringBuilder();
 		
 		//Create Node iterator for reading data
 		Node iteratorNode = firstNode;
 		
 		//Starting with the first Node in the Queue,
-		//Add each Node's data to the return, separated by the specified delimited
-		for(int i = 0; i < this.size()-1; i++) {
-			returnString += iteratorNode.data.toString() + delimiter;
+		//Add each Node's data to the return, separated by the specified delimiter
+		for(int i = 0; i < this.size(); i++) {
+			if (i > 0) returnString.append(delimiter);
+			returnString.append(iteratorNode.data);
 			iteratorNode = iteratorNode.nextNode;
 		}
 		
-		//Add the last Node's data without a terminating delimiter
-		returnString+=iteratorNode.data.toString();
-		
 		//Return the completed String
-		return returnString;
+		return returnString.toString();
 	}
 
 	/**
@@ -186,17 +187,7 @@ public class MyQueue<T> implements QueueInterface<T>{
 	 */
 	@Override
 	public String toString() {
-		Node iteratorNode = firstNode;
-		String returnString = "";
-		
-		//Iterate throught the Queue and add each Node's Data toString() to the returnString
-		for(int i = 0; i < this.size(); i++) {
-			returnString += iteratorNode.data.toString();
-			iteratorNode = iteratorNode.nextNode;
-		}
-		
-		return returnString;
-		
+		return toString("");
 	}
 	
 	/**
@@ -219,29 +210,3 @@ public class MyQueue<T> implements QueueInterface<T>{
 
 	}
 }
-
-/**
- * An Exception class for when an operation tries to add more data to the Queue
- * than is allowable
- * @author Mike Meyers
- *
- */
-@SuppressWarnings("serial")
-class QueueOverflowException extends RuntimeException{
-	public QueueOverflowException() {
-		super("The queue is full and the operation may not be completed");
-	}
-}
-
-/**
- * An Exception class for when an operation tries to pull data that does not
- * exist in the Queue
- * @author Mike Meyers
- *
- */
-@SuppressWarnings("serial")
-class QueueUnderflowException extends RuntimeException {
-	public QueueUnderflowException() {
-		super("The queue is currently empty and the operation may not be completed");
-	}
-}
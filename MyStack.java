@@ -151,34 +151,23 @@ public class MyStack<T> implements StackInterface<T> {
 	 */
 	@Override
 	public String toString(String delimiter) {
-		//Invert the stack by pushing Nodes to a new Stack
-		MyStack<T> invertedStack = new MyStack<T>(this.size());
-		while(!this.isEmpty()) {
-			invertedStack.push(this.pop());
-		}
-		
-		//Create empty String for returning
-		String returnString = "";
-		
-		//Create an iterator for traversing the Stack
-		Node iteratorNode = invertedStack.topNode;
-		
-		//Traverse the Stack and append the individual data Strings to the return String
-		for(int i = 0; i < invertedStack.size() - 1; i++) {
-			returnString += iteratorNode.data.toString() + delimiter;
+		//Read the data from the top down into an array, so the Stack itself is never modified
+		Object[] items = new Object[nodeCount];
+		Node iteratorNode = topNode;
+		for (int i = nodeCount - 1; i >= 0; i--) {
+			items[i] = iteratorNode.data;
 			iteratorNode = iteratorNode.nextNode;
 		}
 		
-		//Add the bottom Node's data to the returnString (prevents extra terminating delimiter)
-		returnString += iteratorNode.data.toString();
-		
-		//Restore the original Stack so that it isn't destroyed
-		while(!invertedStack.isEmpty()) {
-			this.push(invertedStack.pop());
+		//Append the data from the bottom up, placing the delimiter between items
+		StringBuilder returnString = new StringBuilder();
+		for (int i = 0; i < items.length; i++) {
+			if (i > 0) returnString.append(delimiter);
+			returnString.append(items[i]);
 		}
 		
 		//Return the finished String to the function caller
-		return returnString;
+		return returnString.toString();
 	}
 	
 
@@ -188,31 +177,7 @@ public class MyStack<T> implements StackInterface<T> {
 	 */
 	@Override
 	public String toString() {
-		//Invert the Stack by pushing Nodes to a new Stack
-		MyStack<T> invertedStack = new MyStack<T>(this.size());
-		while(!this.isEmpty()) {
-			invertedStack.push(this.pop());
-		}
-		
-		//Create empty String for returning
-		String returnString = "";
-		
-		//Create an iterator for traversing the Stack
-		Node iteratorNode = invertedStack.topNode;
-		
-		//Traverse the Stack and append the individual data Strings to the return String
-		for(int i = 0; i < invertedStack.size(); i++) {
-			returnString += iteratorNode.data.toString();
-			iteratorNode = iteratorNode.nextNode;
-		}
-		
-		//Restore the original Stack so that it isn't destroyed
-		while(!invertedStack.isEmpty()) {
-			this.push(invertedStack.pop());
-		}
-		
-		//Return the finished String to the function caller
-		return returnString;
+		return toString("");
 	}
 
 	/**
@@ -260,54 +225,3 @@ public class MyStack<T> implements StackInterface<T> {
 
 	}
 }
-
-/**
- * Exception class for warning the client when they are attempting to access Stack data that doesn't exist
- * @author Mike Meyers
- *
- */
-@SuppressWarnings("serial")
-class StackUnderflowException extends RuntimeException {
-	
-	/**
-	 * Default StackUnderflowException message
-	 */
-	public StackUnderflowException() {
-		super("The operation may not be performed");
-	}
-	
-	/**
-	 * Create a new StackUnderflowException with a specific message
-	 * @param e the message to return to the client
-	 */
-	public StackUnderflowException(String e) {
-		super(e);
-	}
-}
-
-
-/**
- * Exception class for warning the client when they are attempting to add to a full Stack
- * @author Mike Meyers
- *
- */
-@SuppressWarnings("serial")
-class StackOverflowException extends RuntimeException {
-	
-	/**
-	 * Default StackOverflow message
-	 */
-	public StackOverflowException() {
-		super("The operation may not be performed;");
-	}
-	
-	/**
-	 * Create a new StackoverflowException with a specific message
-	 * @param e the message to return to the client
-	 */
-	public StackOverflowException(String e) {
-		super(e);
-	}
-}
-
-
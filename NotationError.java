@@ -0,0 +1,57 @@
+/**
+ * Error codes reported by the non-throwing NotationV2 routines, such as batch evaluation.
+ * A code of OK means the expression was processed successfully.
+ * 
+ * @author Mike Meyers
+ *
+ */
+public final class NotationError {
+	
+	public static final int OK = 0; //The expression was processed successfully
+	public static final int INVALID_CHARACTER = 1; //The expression contains a character that is not allowed
+	public static final int UNBALANCED = 2; //The expression's braces or parentheses are not properly paired
+	public static final int SEQUENTIAL_OPERATORS = 3; //Two operators appear in sequence
+	public static final int MALFORMED = 4; //The expression is otherwise improperly formatted
+	public static final int INVALID_NUMBER = 5; //A number has more than one decimal point, or no digits
+	public static final int UNBOUND_VARIABLE = 6; //A variable was evaluated without a value
+	public static final int MISSING_OPERAND = 7; //An operator or pair of braces lacks an operand
+	public static final int MISSING_OPERATOR = 8; //Two operands appear with no operator between them
+	public static final int EMPTY = 9; //The expression has no operands at all
+	public static final int UNAVAILABLE = 10; //A service could not accept or finish the request
+	
+	/**
+	 * Determine the error for an expression that did not reduce to exactly one value
+	 * @param remaining the number of values left once every token was read
+	 * @return EMPTY if there were no values, otherwise MISSING_OPERATOR
+	 */
+	static int unreduced(int remaining) {
+		return remaining == 0 ? EMPTY : MISSING_OPERATOR;
+	}
+	
+	/**
+	 * Error codes are constants only; there is nothing to instantiate
+	 */
+	private NotationError() {
+	}
+	
+	/**
+	 * Describe an error code
+	 * @param code the error code
+	 * @return a message describing the error
+	 */
+	public static String describe(int code) {
+		switch (code) {
+			case OK : return "No error";
+			case INVALID_CHARACTER : return "The expression may only contain numbers/letters, brackets/parens, and +, -, *, /, *";
+			case UNBALANCED : return "The expression's braces and parentheses are not balanced";
+			case SEQUENTIAL_OPERATORS : return "The expression contains two operators in sequence";
+			case INVALID_NUMBER : return "A number must contain at least one digit and at most one decimal point";
+			case UNBOUND_VARIABLE : return "A variable has no value";
+			case MISSING_OPERAND : return "An operator or pair of braces is missing an operand";
+			case MISSING_OPERATOR : return "Two operands are not separated by an operator";
+			case EMPTY : return "The expression is empty";
+			case UNAVAILABLE : return "The service is unavailable; try again";
+			default : return "The entered expression contains an invalid notation and cannot be processed.";
+		}
+	}
+}
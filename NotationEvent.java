@@ -0,0 +1,102 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * Base class of the Java Flight Recorder events emitted by NotationV2.
+ *
+ * Events are only written for calls slower than their threshold (1 ms by default, adjustable in the
+ * recording's settings), so they show latency spikes in an always-on recording without recording every
+ * call. While no recording has the events enabled, creating and finishing an event costs next to nothing.
+ * The token count of an event is only worked out once the event is known to be written.
+ *
+ * Usage in a timed routine:
+ *
+ *     ParseEvent event = new ParseEvent();
+ *     event.begin();
+ *     InvalidNotationFormatExceptionV2 failure = null;
+ *     try { ... }
+ *     catch (InvalidNotationFormatExceptionV2 e) { failure = e; throw e; }
+ *     finally { event.finish("compile", infix, failure); }
+ *
+ * @author Mike Meyers
+ *
+ */
+@Category("NotationV2")
+@StackTrace(false)
+abstract class NotationEvent extends Event {
+
+	@Label("Operation")
+	@Description("The NotationV2 routine that was called")
+	String operation;
+
+	@Label("Expression Length")
+	@Description("Length of the expression in characters")
+	int length;
+
+	@Label("Tokens")
+	@Description("Number of tokens in the expression, up to the first problem if it was invalid")
+	int tokens;
+
+	@Label("Outcome")
+	@Description("OK, or the reason the expression was rejected")
+	String outcome;
+
+	@Label("Error Code")
+	@Description("The NotationError code of the outcome")
+	int errorCode;
+
+	@Label("Error Position")
+	@Description("Offset in the expression where the problem was found, or -1")
+	int errorPosition;
+
+	/**
+	 * End the event and write it if it is enabled and slower than its threshold
+	 * @param operation the routine that was called
+	 * @param expression the expression it was given
+	 * @param failure the reason the expression was rejected, or null if it was processed successfully
+	 */
+	void finish(String operation, CharSequence expression, InvalidNotationFormatExceptionV2 failure) {
+		if (failure == null) finish(operation, expression, NotationError.OK, -1);
+		else finish(operation, expression, failure.getError(), failure.getPosition());
+	}
+
+	/**
+	 * End the event and write it if it is enabled and slower than its threshold
+	 * @param operation the routine that was called
+	 * @param expression the expression it was given
+	 * @param error the NotationError code of the outcome
+	 * @param position offset in the expression where the problem was found, or -1
+	 */
+	void finish(String operation, CharSequence expression, int error, int position) {
+		end();
+		if (!shouldCommit()) return;
+
+		this.operation = operation;
+		this.length = expression == null ? 0 : expression.length();
+		this.tokens = expression == null ? 0 : countTokens(expression);
+		this.outcome = NotationError.describe(error);
+		this.errorCode = error;
+		this.errorPosition = position;
+		commit();
+	}
+
+	/**
+	 * Count the tokens of an expression, stopping at the first invalid character or number
+	 * @param expression the expression
+	 * @return the number of tokens read
+	 */
+	static int countTokens(CharSequence expression) {
+		NotationLexer lexer = new NotationLexer(expression);
+		int count = 0;
+		try {
+			while (lexer.next() != NotationLexer.END) count++;
+		}
+		catch (InvalidNotationFormatExceptionV2 e) {
+			//Count only the tokens before the problem
+		}
+		return count;
+	}
+}
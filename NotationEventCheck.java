@@ -0,0 +1,152 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Self-check for the Flight Recorder events NotationV2 emits.
+ *
+ * Records a known sequence of calls with every threshold set to zero, reads the recording back with
+ * RecordingFile, and checks that each call produced one event of the right type with the right
+ * operation, length, token count, outcome, error code, error position and flags. A second recording
+ * with the default thresholds checks that fast calls are not recorded one by one.
+ *
+ * Prints each mismatch and exits with status 1 if there are any.
+ *
+ * Usage: java NotationEventCheck
+ *
+ * @author Mike Meyers
+ *
+ */
+public class NotationEventCheck {
+
+	private static final String[] EVENTS = {"notation.Parse", "notation.Evaluate", "notation.Validate"};
+
+	private final List<String> failures = new ArrayList<>(); //Description of every mismatch
+
+	public static void main(String[] args) throws IOException {
+		NotationEventCheck check = new NotationEventCheck();
+		check.checkEventFields();
+		check.checkDefaultThreshold();
+
+		if (check.failures.isEmpty()) System.out.println("NotationEventCheck: all events as expected");
+		else {
+			for (String failure : check.failures) System.out.println("FAILED: " + failure);
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Record one call of each routine with zero thresholds and compare every field of its event
+	 * @throws IOException if the recording cannot be written or read
+	 */
+	private void checkEventFields() throws IOException {
+		NotationV2.setExpressionCache(null);
+		Path file = Files.createTempFile("notation-events", ".jfr");
+		try {
+			try (Recording recording = new Recording()) {
+				for (String event : EVENTS) recording.enable(event).withThreshold(Duration.ZERO);
+				recording.start();
+
+				NotationV2.convertInfixToPostfix("(1+2)*3");
+				NotationV2.convertPostfixToInfix("1 2 +");
+				NotationV2.evaluateInfixExpression("2^10");
+				try {
+					NotationV2.evaluatePostfixExpression("1 2 + +");
+				}
+				catch (InvalidNotationFormatExceptionV2 e) {
+					//The failure is what the event should describe
+				}
+				NotationV2.compile("a*b");
+				NotationV2.hasSequentialOperators("1 + + 2");
+				NotationV2.isBalanced("(1)");
+
+				recording.stop();
+				recording.dump(file);
+			}
+
+			List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+			events.sort(Comparator.comparing(RecordedEvent::getStartTime));
+			if (events.size() != 7) {
+				failures.add("expected 7 events, recorded " + events.size());
+				return;
+			}
+
+			expect(events.get(0), "notation.Parse", "convertInfixToPostfix", 7, 7, NotationError.OK, -1);
+			expect(events.get(1), "notation.Parse", "convertPostfixToInfix", 5, 3, NotationError.OK, -1);
+			expect(events.get(2), "notation.Evaluate", "evaluateInfixExpression", 4, 3, NotationError.OK, -1);
+			expectFlag(events.get(2), "cached", false);
+			expect(events.get(3), "notation.Evaluate", "evaluatePostfixExpression", 7, 4, NotationError.MISSING_OPERAND, 6);
+			expectFlag(events.get(3), "cached", false);
+			expect(events.get(4), "notation.Parse", "compile", 3, 3, NotationError.OK, -1);
+			expect(events.get(5), "notation.Validate", "hasSequentialOperators", 7, 4, NotationError.SEQUENTIAL_OPERATORS, -1);
+			expectFlag(events.get(5), "valid", false);
+			expect(events.get(6), "notation.Validate", "isBalanced", 3, 3, NotationError.OK, -1);
+			expectFlag(events.get(6), "valid", true);
+		}
+		finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	/**
+	 * Record many fast calls with the default thresholds, which should leave out nearly all of them
+	 * @throws IOException if the recording cannot be written or read
+	 */
+	private void checkDefaultThreshold() throws IOException {
+		Path file = Files.createTempFile("notation-events", ".jfr");
+		try {
+			try (Recording recording = new Recording()) {
+				for (String event : EVENTS) recording.enable(event);
+				recording.start();
+				for (int i = 0; i < 10_000; i++) NotationV2.evaluateInfixExpression("1+2");
+				recording.stop();
+				recording.dump(file);
+			}
+
+			//The first few calls may run slowly before the JIT compiles them; later ones must not be recorded
+			int recorded = RecordingFile.readAllEvents(file).size();
+			if (recorded > 100) failures.add("default threshold recorded " + recorded + " of 10000 fast calls");
+		}
+		finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	/**
+	 * Compare the common fields of an event
+	 */
+	private void expect(RecordedEvent event, String type, String operation, int length, int tokens, int error, int position) {
+		String name = event.getEventType().getName();
+		String context = name + " " + event.getString("operation");
+		compare(context, "type", type, name);
+		compare(context, "operation", operation, event.getString("operation"));
+		compare(context, "length", length, event.getInt("length"));
+		compare(context, "tokens", tokens, event.getInt("tokens"));
+		compare(context, "outcome", NotationError.describe(error), event.getString("outcome"));
+		compare(context, "errorCode", error, event.getInt("errorCode"));
+		compare(context, "errorPosition", position, event.getInt("errorPosition"));
+	}
+
+	/**
+	 * Compare a boolean field that only some event types have
+	 */
+	private void expectFlag(RecordedEvent event, String field, boolean value) {
+		String context = event.getEventType().getName() + " " + event.getString("operation");
+		if (!event.hasField(field)) failures.add(context + ": no field " + field);
+		else compare(context, field, value, event.getBoolean(field));
+	}
+
+	/**
+	 * Record a mismatch between an expected and a recorded value
+	 */
+	private void compare(String context, String field, Object expected, Object actual) {
+		if (!expected.equals(actual)) failures.add(context + ": " + field + " was " + actual + ", expected " + expected);
+	}
+}
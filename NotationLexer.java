@@ -0,0 +1,285 @@
+/**
+ * Single-pass tokenizer shared by every NotationV2 routine.
+ *
+ * The lexer walks the source expression once and reports one typed token at a time.
+ * Numbers and variables are reported as offsets into the source rather than as new Strings,
+ * and operators and braces are reported as their character code, so scanning an expression
+ * creates no objects. A lexer may be reset and reused for any number of expressions.
+ *
+ * @author Mike Meyers
+ * @version 2.0
+ *
+ */
+public class NotationLexer {
+
+	public static final int END = 0; //No more tokens remain in the source
+	public static final int NUMBER = 1; //Digits with at most one decimal point
+	public static final int VARIABLE = 2; //A letter followed by any letters or digits
+	public static final int OPERATOR = 3; //One of + - * / ^
+	public static final int OPEN_BRACE = 4; //One of ( { [
+	public static final int CLOSE_BRACE = 5; //One of ) } ]
+	public static final int INVALID = -1; //A character that is not allowed, or a malformed number; see error()
+
+	private CharSequence source; //The expression being scanned
+	private int position; //Offset of the next character to be scanned
+	private int limit; //Offset one past the last character to be scanned
+
+	private int tokenType; //Type of the current token
+	private int tokenStart; //Offset of the first character of the current token
+	private int tokenEnd; //Offset one past the last character of the current token
+	private char tokenChar; //First character of the current token (the operator or brace code)
+	private int error; //NotationError code of the current token when it is INVALID
+	private int errorPosition; //Offset of the offending character when the current token is INVALID
+	private int tokenCount; //Tokens returned since the last reset, not counting END or INVALID
+
+	/**
+	 * Create a lexer with no source. Call reset() before scanning
+	 */
+	public NotationLexer() {
+		reset("");
+	}
+
+	/**
+	 * Create a lexer positioned at the start of a source expression
+	 * @param source the expression to be scanned
+	 */
+	public NotationLexer(CharSequence source) {
+		reset(source);
+	}
+
+	/**
+	 * Point the lexer at a new source expression so that it may be reused
+	 * @param source the expression to be scanned
+	 * @return this lexer, for chaining
+	 */
+	public NotationLexer reset(CharSequence source) {
+		return reset(source, 0, source.length());
+	}
+
+	/**
+	 * Point the lexer at a region of a source expression so that it may be reused
+	 * @param source the text containing the expression
+	 * @param start offset of the first character of the expression
+	 * @param end offset one past the last character of the expression
+	 * @return this lexer, for chaining
+	 */
+	public NotationLexer reset(CharSequence source, int start, int end) {
+		this.source = source;
+		position = start;
+		limit = end;
+		tokenType = END;
+		tokenStart = start;
+		tokenEnd = start;
+		tokenChar = 0;
+		tokenCount = 0;
+		return this;
+	}
+
+	/**
+	 * Advance to the next token in the source. Whitespace between tokens is skipped
+	 * @return the type of the token found, or END if the source is exhausted
+	 * @throws InvalidNotationFormatExceptionV2 if an invalid character or malformed number is found
+	 */
+	public int next() throws InvalidNotationFormatExceptionV2 {
+		int type = scan();
+		if (type == INVALID) throw new InvalidNotationFormatExceptionV2(error, errorPosition);
+		return type;
+	}
+
+	/**
+	 * Advance to the next token in the source without throwing. Whitespace between tokens is skipped.
+	 * An invalid character or malformed number is reported as an INVALID token, whose problem is
+	 * described by error() and errorPosition(); scanning should stop there
+	 * @return the type of the token found, INVALID, or END if the source is exhausted
+	 */
+	public int scan() {
+		//Skip whitespace
+		while (position < limit && Character.isWhitespace(source.charAt(position))) position++;
+
+		tokenStart = position;
+
+		//Report the end of the source once every character has been read
+		if (position >= limit) {
+			tokenEnd = position;
+			tokenChar = 0;
+			tokenType = END;
+			return END;
+		}
+
+		char ch = source.charAt(position);
+		tokenChar = ch;
+
+		//Numbers run until the first character that is not a digit or decimal point
+		if (isDigit(ch) || ch == '.') {
+			boolean hasDecimal = false;
+			boolean hasDigit = false;
+			while (position < limit) {
+				ch = source.charAt(position);
+				if (ch == '.') {
+					if (hasDecimal) return invalid(NotationError.INVALID_NUMBER, position);
+					hasDecimal = true;
+				}
+				else if (isDigit(ch)) hasDigit = true;
+				else break;
+				position++;
+			}
+			if (!hasDigit) return invalid(NotationError.INVALID_NUMBER, tokenStart);
+			tokenType = NUMBER;
+		}
+
+		//Variables start with a letter and may continue with letters and digits
+		else if (Character.isAlphabetic(ch)) {
+			position++;
+			while (position < limit && (Character.isAlphabetic(source.charAt(position)) || isDigit(source.charAt(position)))) {
+				position++;
+			}
+			tokenType = VARIABLE;
+		}
+
+		//Operators and braces are always a single character
+		else if (NotationV2.isOperator(ch)) {
+			position++;
+			tokenType = OPERATOR;
+		}
+		else if (NotationV2.isBrace(ch)) {
+			position++;
+			tokenType = OPEN_BRACE;
+		}
+		else if (NotationV2.isClosedBrace(ch)) {
+			position++;
+			tokenType = CLOSE_BRACE;
+		}
+		else return invalid(NotationError.INVALID_CHARACTER, position);
+
+		tokenEnd = position;
+		tokenCount++;
+		return tokenType;
+	}
+
+	/**
+	 * Make the current token INVALID
+	 * @param error the NotationError code of the problem
+	 * @param at offset of the offending character
+	 * @return INVALID
+	 */
+	protected int invalid(int error, int at) {
+		this.error = error;
+		errorPosition = at;
+		tokenEnd = position;
+		tokenType = INVALID;
+		return INVALID;
+	}
+
+	/**
+	 * Determine what is wrong with an INVALID token
+	 * @return the NotationError code of the problem
+	 */
+	public int error() {
+		return error;
+	}
+
+	/**
+	 * Determine where the problem with an INVALID token lies
+	 * @return the offset of the offending character
+	 */
+	public int errorPosition() {
+		return errorPosition;
+	}
+
+	/**
+	 * Determine how many tokens have been scanned since the source was set, so that a parse can report
+	 * the size of its input without lexing it again
+	 * @return the number of tokens returned by next() or scan(), not counting END or INVALID
+	 */
+	public int tokenCount() {
+		return tokenCount;
+	}
+
+	/**
+	 * Determine the type of the current token
+	 * @return the type of the token most recently returned by next()
+	 */
+	public int tokenType() {
+		return tokenType;
+	}
+
+	/**
+	 * Determine where the current token begins
+	 * @return the offset of the first character of the current token
+	 */
+	public int tokenStart() {
+		return tokenStart;
+	}
+
+	/**
+	 * Determine where the current token ends
+	 * @return the offset one past the last character of the current token
+	 */
+	public int tokenEnd() {
+		return tokenEnd;
+	}
+
+	/**
+	 * Retrieve the operator or brace character of the current token
+	 * @return the first character of the current token
+	 */
+	public char tokenChar() {
+		return tokenChar;
+	}
+
+	/**
+	 * Retrieve the source the lexer is currently scanning
+	 * @return the source expression
+	 */
+	public CharSequence source() {
+		return source;
+	}
+
+	/**
+	 * Copy the current token's text into a new String. Only needed when the token must outlive the source
+	 * @return the text of the current token
+	 */
+	public String tokenText() {
+		return source.subSequence(tokenStart, tokenEnd).toString();
+	}
+
+	/**
+	 * Append the current token's text to a StringBuilder without creating an intermediate String
+	 * @param builder the StringBuilder to append to
+	 * @return the StringBuilder, for chaining
+	 */
+	public StringBuilder appendToken(StringBuilder builder) {
+		return builder.append(source, tokenStart, tokenEnd);
+	}
+
+	/**
+	 * Read the numeric value of the current NUMBER token
+	 * @return the value of the number
+	 */
+	public double numberValue() {
+		return NumberParser.parse(source, tokenStart, tokenEnd);
+	}
+
+	/**
+	 * Determine the open brace that a close brace must be matched with
+	 * @param ch a close brace character
+	 * @return the matching open brace character
+	 */
+	public static char openingBrace(char ch) {
+		switch (ch) {
+			case ')' : return '(';
+			case '}' : return '{';
+			case ']' : return '[';
+			default : return 0;
+		}
+	}
+
+	/**
+	 * Determine if a character is an ASCII digit, the only digits a number may contain
+	 * @param ch the character to be examined
+	 * @return true if the character is 0-9, false otherwise
+	 */
+	private static boolean isDigit(char ch) {
+		return ch >= '0' && ch <= '9';
+	}
+}
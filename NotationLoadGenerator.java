@@ -0,0 +1,159 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A local load generator for NotationService and NotationServer.
+ *
+ * Opens many connections at once, each sending a number of requests, a batch at a time, and measures
+ * the round-trip latency of every batch. Connections may be left idle for a while between batches, to
+ * model large numbers of mostly idle clients. With --self, an in-process NotationService is started on
+ * a free port first, so the whole test needs only one command.
+ * 
+ * Usage: java NotationLoadGenerator [--self | --tcp port | --unix path] [--connections n] [--requests n]
+ *        [--pipeline n] [--idle-ms n]
+ *
+ * @author Mike Meyers
+ *
+ */
+public class NotationLoadGenerator {
+
+	/**
+	 * Run a load test from the command line
+	 * @param args the target and load shape
+	 * @throws Exception if the target cannot be reached
+	 */
+	public static void main(String[] args) throws Exception {
+		String mode = "--self";
+		String address = null;
+		int connections = 1000;
+		int requests = 100;
+		int pipeline = 10;
+		long idleMillis = 0;
+		for (int i = 0; i < args.length; i++) {
+			switch (args[i]) {
+				case "--self" : mode = args[i]; break;
+				case "--tcp" :
+				case "--unix" :
+					mode = args[i];
+					address = args[++i];
+					break;
+				case "--connections" : connections = Integer.parseInt(args[++i]); break;
+				case "--requests" : requests = Integer.parseInt(args[++i]); break;
+				case "--pipeline" : pipeline = Integer.parseInt(args[++i]); break;
+				case "--idle-ms" : idleMillis = Long.parseLong(args[++i]); break;
+				default :
+					System.err.println("Usage: java NotationLoadGenerator [--self | --tcp port | --unix path] [--connections n]"
+							+ " [--requests n] [--pipeline n] [--idle-ms n]");
+					System.exit(1);
+			}
+		}
+
+		//Start an in-process service on a free port if asked to
+		NotationService service = null;
+		SocketAddress target;
+		if (mode.equals("--self")) {
+			service = new NotationService(Runtime.getRuntime().availableProcessors(), 4096, 1000);
+			ServerSocketChannel server = NotationService.open("--tcp", "0");
+			target = server.getLocalAddress();
+			NotationService listening = service;
+			Thread acceptor = new Thread(() -> {
+				try {
+					listening.listen(server);
+				}
+				catch (IOException e) {
+					//The service is being shut down
+				}
+			});
+			acceptor.setDaemon(true);
+			acceptor.start();
+		}
+		else if (mode.equals("--unix")) target = UnixDomainSocketAddress.of(Path.of(address));
+		else target = new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(address));
+
+		LatencyHistogram roundTrips = new LatencyHistogram();
+		LongAdder errors = new LongAdder();
+		LongAdder failedConnections = new LongAdder();
+		CountDownLatch done = new CountDownLatch(connections);
+		ExecutorService clients = NotationService.newConnectionExecutor();
+
+		long start = System.nanoTime();
+		for (int c = 0; c < connections; c++) {
+			int seed = c;
+			int perConnection = requests;
+			int batch = Math.max(1, pipeline);
+			long idle = idleMillis;
+			clients.execute(() -> {
+				try {
+					run(target, seed, perConnection, batch, idle, roundTrips, errors);
+				}
+				catch (IOException | InterruptedException e) {
+					failedConnections.increment();
+				}
+				finally {
+					done.countDown();
+				}
+			});
+		}
+		done.await();
+		long elapsed = System.nanoTime() - start;
+		clients.shutdown();
+
+		long total = (long) connections * requests;
+		System.out.printf("%d connections, %d requests in %.2fs (%.0f requests/s), %d errors, %d failed connections%n",
+				connections, total, elapsed / 1e9, total / (elapsed / 1e9), errors.sum(), failedConnections.sum());
+		System.out.println("batch round trip: " + roundTrips);
+		if (service != null) {
+			System.out.println(service.report());
+			service.close();
+		}
+	}
+
+	/**
+	 * Drive one connection: send its requests a batch at a time and read every response
+	 */
+	private static void run(SocketAddress target, int seed, int requests, int batch, long idleMillis,
+			LatencyHistogram roundTrips, LongAdder errors) throws IOException, InterruptedException {
+		Random random = new Random(seed);
+		try (SocketChannel channel = SocketChannel.open(target instanceof UnixDomainSocketAddress
+				? StandardProtocolFamily.UNIX : StandardProtocolFamily.INET)) {
+			channel.connect(target);
+			BufferedReader reader = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+			BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8));
+
+			for (int sent = 0; sent < requests; ) {
+				int size = Math.min(batch, requests - sent);
+				long start = System.nanoTime();
+				for (int i = 0; i < size; i++) {
+					writer.append("eval-infix ").append(ExpressionSamples.infixOfSize(20, random)).append('\n');
+				}
+				writer.flush();
+				for (int i = 0; i < size; i++) {
+					String response = reader.readLine();
+					if (response == null) throw new IOException("The connection closed early");
+					if (!response.startsWith("OK")) errors.increment();
+				}
+				roundTrips.record(System.nanoTime() - start);
+				sent += size;
+				if (idleMillis > 0) TimeUnit.MILLISECONDS.sleep(idleMillis);
+			}
+		}
+	}
+}
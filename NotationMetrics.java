@@ -0,0 +1,321 @@
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * Opt-in measurements of the four NotationV2 conversion and evaluation methods.
+ *
+ * For each method, the metrics record the number of calls and failures, a latency histogram, the length
+ * of each input, its number of tokens, the peak depth of its operand stack, and a count of failures by
+ * NotationError code. Recording is lock-free: counters are LongAdders and the histogram is a
+ * LatencyHistogram, so threads calling NotationV2 at once do not contend on the metrics.
+ *
+ * Metrics are off by default. While they are off, each NotationV2 method pays for one volatile read and
+ * nothing else. Turn them on with setEnabled(true), or start the JVM with -Dnotation.metrics=true. While
+ * they are on, the token count and stack depth of each valid input are counted by the call's own parse,
+ * by its lexer and by the sink that receives the expression, so the input is never lexed a second time.
+ * A call answered from the expression cache reports the counts its program was compiled with.
+ *
+ * Metrics are read on demand, with no background thread and no external service: through dump(), or
+ * through JMX once registerMBeans() has been called, as one MXBean per method named
+ * NotationV2:type=Metrics,operation=&lt;name&gt;.
+ *
+ * @author Mike Meyers
+ *
+ */
+public final class NotationMetrics {
+
+	//The measured methods, using the operation names of NotationServer's protocol
+	public static final int INFIX_TO_POSTFIX = 0; //convertInfixToPostfix
+	public static final int POSTFIX_TO_INFIX = 1; //convertPostfixToInfix
+	public static final int EVALUATE_POSTFIX = 2; //evaluatePostfixExpression
+	public static final int EVALUATE_INFIX = 3; //evaluateInfixExpression
+	private static final String[] NAMES = {"infix-to-postfix", "postfix-to-infix", "eval-postfix", "eval-infix"};
+
+	private static final int ERROR_CODES = NotationError.UNAVAILABLE + 1; //Number of NotationError codes
+
+	//Read by every measured call, so it is the only cost while metrics are off
+	static volatile boolean enabled = Boolean.getBoolean("notation.metrics");
+
+	private static final Operation[] OPERATIONS = new Operation[NAMES.length];
+	static {
+		for (int i = 0; i < NAMES.length; i++) OPERATIONS[i] = new Operation(NAMES[i]);
+	}
+
+	//Each thread keeps one census, so a measured call allocates nothing to report its counts
+	private static final ThreadLocal<Census> CENSUS = ThreadLocal.withInitial(Census::new);
+
+	/**
+	 * Metrics are static only; there is nothing to instantiate
+	 */
+	private NotationMetrics() {
+	}
+
+	/**
+	 * Turn measurement on or off. Metrics already recorded are kept
+	 * @param on true to measure every call, false to stop measuring
+	 */
+	public static void setEnabled(boolean on) {
+		enabled = on;
+	}
+
+	/**
+	 * Determine whether calls are being measured
+	 * @return true if metrics are on
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Retrieve the metrics of one method
+	 * @param operation one of INFIX_TO_POSTFIX, POSTFIX_TO_INFIX, EVALUATE_POSTFIX or EVALUATE_INFIX
+	 * @return the method's metrics
+	 */
+	public static OperationMetricsMXBean get(int operation) {
+		return OPERATIONS[operation];
+	}
+
+	/**
+	 * Discard every recorded measurement
+	 */
+	public static void reset() {
+		for (Operation operation : OPERATIONS) operation.reset();
+	}
+
+	/**
+	 * Register one MXBean per method with the platform MBean server. Calling this again has no effect
+	 * @throws JMException if the MBeans cannot be registered
+	 */
+	public static synchronized void registerMBeans() throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		for (Operation operation : OPERATIONS) {
+			ObjectName name = new ObjectName("NotationV2:type=Metrics,operation=" + operation.name);
+			if (!server.isRegistered(name)) {
+				server.registerMBean(new StandardMBean(operation, OperationMetricsMXBean.class, true), name);
+			}
+		}
+	}
+
+	/**
+	 * Describe every method's metrics as text, one block per method
+	 * @return the current metrics
+	 */
+	public static String dump() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("NotationV2 metrics (").append(enabled ? "enabled" : "disabled").append(")\n");
+		for (Operation operation : OPERATIONS) operation.describe(builder);
+		return builder.toString();
+	}
+
+	/**
+	 * Retrieve the calling thread's census, cleared, for a measured call to fill in as it parses
+	 * @return the census
+	 */
+	static Census census() {
+		Census census = CENSUS.get();
+		census.record(0, 0);
+		return census;
+	}
+
+	/**
+	 * Record a call that succeeded
+	 * @param operation the method called
+	 * @param input the expression it was given
+	 * @param start the System.nanoTime() at which the call began
+	 * @param census the token count and stack depth the call's parse recorded
+	 */
+	static void succeeded(int operation, CharSequence input, long start, Census census) {
+		long elapsed = System.nanoTime() - start;
+		Operation metrics = OPERATIONS[operation];
+		metrics.latency.record(elapsed);
+		metrics.inputLength.record(input.length());
+		metrics.tokens.record(census.tokens);
+		metrics.stackDepth.record(census.peakDepth);
+	}
+
+	/**
+	 * Record a call that failed
+	 * @param operation the method called
+	 * @param input the expression it was given
+	 * @param start the System.nanoTime() at which the call began
+	 * @param e the reason the call failed
+	 */
+	static void failed(int operation, CharSequence input, long start, InvalidNotationFormatExceptionV2 e) {
+		long elapsed = System.nanoTime() - start;
+		Operation metrics = OPERATIONS[operation];
+		metrics.latency.record(elapsed);
+		metrics.inputLength.record(input == null ? 0 : input.length());
+		int error = e.getError();
+		metrics.failures.incrementAndGet(error >= 0 && error < ERROR_CODES ? error : NotationError.MALFORMED);
+	}
+
+	/**
+	 * The metrics of one NotationV2 method, as seen through JMX or get()
+	 * @author Mike Meyers
+	 *
+	 */
+	public interface OperationMetricsMXBean {
+		/** @return the operation name, as used by NotationServer */
+		String getName();
+		/** @return the number of calls measured, valid or not */
+		long getCalls();
+		/** @return the number of calls that failed */
+		long getFailures();
+		/** @return the mean latency in microseconds */
+		double getMeanMicros();
+		/** @return the median latency in microseconds */
+		double getP50Micros();
+		/** @return the 99th percentile latency in microseconds */
+		double getP99Micros();
+		/** @return the 99.9th percentile latency in microseconds */
+		double getP999Micros();
+		/** @return the largest latency in microseconds */
+		double getMaxMicros();
+		/** @return the mean input length in characters */
+		double getMeanInputLength();
+		/** @return the longest input in characters */
+		long getMaxInputLength();
+		/** @return the mean number of tokens in a valid input */
+		double getMeanTokens();
+		/** @return the most tokens in a valid input */
+		long getMaxTokens();
+		/** @return the mean peak operand stack depth of a valid input */
+		double getMeanStackDepth();
+		/** @return the greatest peak operand stack depth of a valid input */
+		long getMaxStackDepth();
+		/** @return the number of failures for each reason that has occurred */
+		Map<String, Long> getFailureReasons();
+		/** Discard this method's recorded measurements */
+		void reset();
+	}
+
+	/**
+	 * The recorded metrics of one method
+	 * @author Mike Meyers
+	 *
+	 */
+	private static final class Operation implements OperationMetricsMXBean {
+		final String name;
+		final LatencyHistogram latency = new LatencyHistogram(); //Every call, valid or not
+		final Summary inputLength = new Summary(); //Every call, valid or not
+		final Summary tokens = new Summary(); //Valid calls only
+		final Summary stackDepth = new Summary(); //Valid calls only
+		final AtomicLongArray failures = new AtomicLongArray(ERROR_CODES); //Failed calls, by NotationError code
+
+		Operation(String name) {
+			this.name = name;
+		}
+
+		@Override public String getName() { return name; }
+		@Override public long getCalls() { return latency.getCount(); }
+		@Override public double getMeanMicros() { return latency.getMean() / 1000; }
+		@Override public double getP50Micros() { return latency.getPercentile(50) / 1000.0; }
+		@Override public double getP99Micros() { return latency.getPercentile(99) / 1000.0; }
+		@Override public double getP999Micros() { return latency.getPercentile(99.9) / 1000.0; }
+		@Override public double getMaxMicros() { return latency.getMax() / 1000.0; }
+		@Override public double getMeanInputLength() { return inputLength.mean(); }
+		@Override public long getMaxInputLength() { return inputLength.max.get(); }
+		@Override public double getMeanTokens() { return tokens.mean(); }
+		@Override public long getMaxTokens() { return tokens.max.get(); }
+		@Override public double getMeanStackDepth() { return stackDepth.mean(); }
+		@Override public long getMaxStackDepth() { return stackDepth.max.get(); }
+
+		@Override
+		public long getFailures() {
+			long total = 0;
+			for (int code = 0; code < ERROR_CODES; code++) total += failures.get(code);
+			return total;
+		}
+
+		@Override
+		public Map<String, Long> getFailureReasons() {
+			Map<String, Long> reasons = new LinkedHashMap<>();
+			for (int code = 0; code < ERROR_CODES; code++) {
+				long count = failures.get(code);
+				if (count > 0) reasons.put(NotationError.describe(code), count);
+			}
+			return reasons;
+		}
+
+		@Override
+		public void reset() {
+			latency.reset();
+			inputLength.reset();
+			tokens.reset();
+			stackDepth.reset();
+			for (int code = 0; code < ERROR_CODES; code++) failures.set(code, 0);
+		}
+
+		/**
+		 * Append this method's metrics to a text dump
+		 */
+		void describe(StringBuilder builder) {
+			builder.append(name).append(": calls=").append(getCalls()).append(" failures=").append(getFailures()).append('\n');
+			builder.append("  latency: ").append(latency).append('\n');
+			builder.append(String.format("  input length: mean=%.1f max=%d%n", getMeanInputLength(), getMaxInputLength()));
+			builder.append(String.format("  tokens: mean=%.1f max=%d%n", getMeanTokens(), getMaxTokens()));
+			builder.append(String.format("  stack depth: mean=%.1f max=%d%n", getMeanStackDepth(), getMaxStackDepth()));
+			for (Map.Entry<String, Long> reason : getFailureReasons().entrySet()) {
+				builder.append("  failed ").append(reason.getValue()).append("x: ").append(reason.getKey()).append('\n');
+			}
+		}
+	}
+
+	/**
+	 * A lock-free running count, sum and maximum
+	 * @author Mike Meyers
+	 *
+	 */
+	private static final class Summary {
+		final LongAdder count = new LongAdder();
+		final LongAdder sum = new LongAdder();
+		final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+		void record(long value) {
+			count.increment();
+			sum.add(value);
+			max.accumulate(value);
+		}
+
+		double mean() {
+			long n = count.sum();
+			return (n == 0) ? 0 : (double) sum.sum() / n;
+		}
+
+		void reset() {
+			count.reset();
+			sum.reset();
+			max.reset();
+		}
+	}
+
+	/**
+	 * The size of the expression a measured call has just handled: its tokens, and the peak depth of its
+	 * operand stack the way evaluating it in postfix order would use the stack. Filled in by the call's
+	 * own parse
+	 * @author Mike Meyers
+	 *
+	 */
+	static final class Census {
+		int tokens; //Tokens in the expression
+		int peakDepth; //Deepest the operand stack grew
+
+		/**
+		 * Record the size of the expression
+		 * @param tokens the number of tokens the parse read
+		 * @param peakDepth the deepest the operand stack grew
+		 */
+		void record(int tokens, int peakDepth) {
+			this.tokens = tokens;
+			this.peakDepth = peakDepth;
+		}
+	}
+}
@@ -0,0 +1,131 @@
+/**
+ * The outcome of evaluating an expression without exceptions: either its value, or the NotationError code,
+ * position and reason of the first problem found.
+ *
+ * A result may be reused for any number of evaluations, so checking many expressions creates no objects.
+ *
+ * @author Mike Meyers
+ *
+ */
+public final class NotationResult {
+
+	private int error = NotationError.OK; //NotationError code, OK if the expression was evaluated
+	private int position = -1; //Offset of the offending token, or -1 if unknown or successful
+	private String reason = null; //Description of the problem, or null to use the error code's description
+	private double value = Double.NaN; //Value of the expression, NaN if it failed
+
+	/**
+	 * Create an empty result, ready to be filled by an evaluation
+	 */
+	public NotationResult() {
+	}
+
+	/**
+	 * Determine if the expression was evaluated successfully
+	 * @return true if there was no error
+	 */
+	public boolean isOk() {
+		return error == NotationError.OK;
+	}
+
+	/**
+	 * Determine what kind of problem was found
+	 * @return the NotationError code, OK if the expression was evaluated
+	 */
+	public int getError() {
+		return error;
+	}
+
+	/**
+	 * Determine where the problem was found
+	 * @return the offset in the expression of the offending token, or -1 if unknown or successful
+	 */
+	public int getPosition() {
+		return position;
+	}
+
+	/**
+	 * Describe the problem found
+	 * @return the reason the expression was rejected, or "No error" if it was evaluated
+	 */
+	public String getReason() {
+		return (reason == null) ? NotationError.describe(error) : reason;
+	}
+
+	/**
+	 * Retrieve the value of the expression
+	 * @return the value, or NaN if the expression was invalid
+	 */
+	public double getValue() {
+		return value;
+	}
+
+	/**
+	 * Describe the result
+	 * @return the value, or the reason and position of the error
+	 */
+	@Override
+	public String toString() {
+		if (isOk()) return Double.toString(value);
+		return (position < 0) ? getReason() : getReason() + " (position " + position + ")";
+	}
+
+	/**
+	 * Record a successful evaluation
+	 * @param value the value of the expression
+	 * @return this result
+	 */
+	NotationResult succeed(double value) {
+		this.error = NotationError.OK;
+		this.position = -1;
+		this.reason = null;
+		this.value = value;
+		return this;
+	}
+
+	/**
+	 * Record a failed evaluation
+	 * @param e the exception describing the problem
+	 * @return this result
+	 */
+	NotationResult fail(InvalidNotationFormatExceptionV2 e) {
+		this.error = e.getError();
+		this.position = e.getPosition();
+		this.reason = e.getReason();
+		this.value = Double.NaN;
+		return this;
+	}
+
+	/**
+	 * Record a failed evaluation, described by its error code
+	 * @param error the NotationError code of the problem
+	 * @param position offset of the offending token, or -1 if unknown
+	 * @return false, so a routine that has failed can return this directly
+	 */
+	boolean fail(int error, int position) {
+		return fail(null, error, position);
+	}
+
+	/**
+	 * Record a failed evaluation
+	 * @param reason description of the problem, or null to use the error code's description
+	 * @param error the NotationError code of the problem
+	 * @param position offset of the offending token, or -1 if unknown
+	 * @return false, so a routine that has failed can return this directly
+	 */
+	boolean fail(String reason, int error, int position) {
+		this.error = error;
+		this.position = position;
+		this.reason = reason;
+		this.value = Double.NaN;
+		return false;
+	}
+
+	/**
+	 * Create the exception the throwing routines report this result's problem with
+	 * @return the exception describing the problem
+	 */
+	InvalidNotationFormatExceptionV2 exception() {
+		return new InvalidNotationFormatExceptionV2(getReason(), error, position);
+	}
+}
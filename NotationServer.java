@@ -0,0 +1,248 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.net.BindException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.management.JMException;
+
+/**
+ * A long-running, non-interactive front end to NotationV2, so a pipeline pays for JVM startup once
+ * rather than once per expression.
+ *
+ * Requests are read one per line, as an operation followed by an expression:
+ * 
+ *     infix-to-postfix (1 + 2) * 3
+ *     eval-infix (1 + 2) * 3
+ * 
+ * The operations are infix-to-postfix, postfix-to-infix, eval-postfix and eval-infix, or 1-4 as numbered
+ * in NotationV2Driver's menu. Every request line gets exactly one response line, in request order:
+ * 
+ *     OK 9.0
+ *     ERR 3 4 The expression contains two operators in sequence
+ * 
+ * where an error gives its NotationError code, the position of the problem (-1 if unknown) and the reason.
+ * Clients may pipeline, sending any number of requests before reading responses. Responses are flushed
+ * whenever the server has caught up with the requests it has received.
+ * 
+ * Requests can be served from standard input, a local TCP port or a Unix domain socket. Each socket
+ * connection is served by a thread from a fixed pool, and every thread evaluates with its own reusable
+ * evaluator, so a busy server creates no new Stacks or lexers.
+ * 
+ * Usage: java NotationServer [--stdin | --tcp port | --unix path] [--threads n] [--cache n] [--metrics]
+ *
+ * @author Mike Meyers
+ *
+ */
+public class NotationServer implements Closeable {
+
+	private final ExecutorService connections; //Threads serving socket connections
+
+	/**
+	 * Create a server that can serve up to a given number of socket connections at once
+	 * @param threads the number of connections served at once; further connections wait their turn
+	 */
+	public NotationServer(int threads) {
+		connections = Executors.newFixedThreadPool(Math.max(1, threads));
+	}
+
+	/**
+	 * Start a server from the command line
+	 * @param args --stdin (the default), --tcp port or --unix path, and optionally --threads n, --cache n
+	 * and --metrics, which turns on NotationMetrics, registers its MBeans and prints them at exit
+	 * @throws IOException if the server's input, output or socket fails
+	 */
+	public static void main(String[] args) throws IOException {
+		String mode = "--stdin";
+		String address = null;
+		int threads = Runtime.getRuntime().availableProcessors();
+		for (int i = 0; i < args.length; i++) {
+			switch (args[i]) {
+				case "--stdin" : mode = args[i]; break;
+				case "--tcp" :
+				case "--unix" :
+					mode = args[i];
+					address = args[++i];
+					break;
+				case "--threads" : threads = Integer.parseInt(args[++i]); break;
+				case "--cache" : NotationV2.setExpressionCache(new CompiledExpressionCache(Integer.parseInt(args[++i]))); break;
+				case "--metrics" : enableMetrics(); break;
+				default :
+					System.err.println("Usage: java NotationServer [--stdin | --tcp port | --unix path] [--threads n] [--cache n] [--metrics]");
+					System.exit(1);
+			}
+		}
+
+		try (NotationServer server = new NotationServer(threads)) {
+			switch (mode) {
+				case "--tcp" :
+					//Only local clients may connect
+					ServerSocketChannel tcp = ServerSocketChannel.open();
+					tcp.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(address)));
+					System.err.println("Listening on " + tcp.getLocalAddress());
+					server.listen(tcp);
+					break;
+				case "--unix" :
+					Path path = Path.of(address);
+					removeStaleSocket(path);
+					ServerSocketChannel unix = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+					unix.bind(UnixDomainSocketAddress.of(path));
+					System.err.println("Listening on " + path);
+					server.listen(unix);
+					break;
+				default :
+					server.serve(System.in, System.out);
+					break;
+			}
+		}
+	}
+
+
+	/**
+	 * Turn on NotationMetrics, make them readable over JMX, and print them when the JVM exits
+	 */
+	static void enableMetrics() {
+		NotationMetrics.setEnabled(true);
+		try {
+			NotationMetrics.registerMBeans();
+		}
+		catch (JMException e) {
+			System.err.println("Metrics are not available over JMX: " + e);
+		}
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> System.err.print(NotationMetrics.dump())));
+	}
+
+	/**
+	 * Remove the socket file an earlier server left at a Unix domain socket path, so the path can be
+	 * bound again. Anything else at the path, such as a regular file or a link, is left alone
+	 * @param path the socket path
+	 * @throws BindException if the path holds something other than a socket
+	 * @throws IOException if the path cannot be examined or the socket file cannot be removed
+	 */
+	static void removeStaleSocket(Path path) throws IOException {
+		BasicFileAttributes attributes;
+		try {
+			attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+		}
+		catch (NoSuchFileException e) {
+			return;
+		}
+		if (!attributes.isOther()) throw new BindException("Address in use: " + path + " exists and is not a socket");
+		Files.delete(path);
+	}
+	/**
+	 * Accept connections until the channel is closed, serving each one on a pool thread
+	 * @param server the bound server channel
+	 * @throws IOException if accepting a connection fails
+	 */
+	public void listen(ServerSocketChannel server) throws IOException {
+		try (ServerSocketChannel channel = server) {
+			while (channel.isOpen()) {
+				SocketChannel client = channel.accept();
+				connections.execute(() -> {
+					try (SocketChannel connection = client) {
+						serve(Channels.newInputStream(connection), Channels.newOutputStream(connection));
+					}
+					catch (IOException e) {
+						//The client went away; its connection is simply closed
+					}
+				});
+			}
+		}
+	}
+
+	/**
+	 * Serve requests from a stream until it ends, writing one response per request in order
+	 * @param in the stream of request lines
+	 * @param out the stream to write response lines to
+	 * @throws IOException if either stream fails
+	 */
+	public void serve(InputStream in, OutputStream out) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+		BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+		StringBuilder response = new StringBuilder();
+
+		String line;
+		while ((line = reader.readLine()) != null) {
+			response.setLength(0);
+			respond(line, response);
+			writer.append(response).append('\n');
+
+			//Pipelined requests that have already arrived are answered before anything is flushed
+			if (!reader.ready()) writer.flush();
+		}
+		writer.flush();
+	}
+
+	/**
+	 * Stop serving socket connections. Connections already being served are finished first
+	 */
+	@Override
+	public void close() {
+		connections.shutdown();
+	}
+
+	/**
+	 * Carry out one request
+	 * @param request the request line: an operation, then the expression
+	 * @param response receives the response line, without its line ending
+	 */
+	static void respond(String request, StringBuilder response) {
+		String line = request.strip();
+		int split = 0;
+		while (split < line.length() && !Character.isWhitespace(line.charAt(split))) split++;
+		String operation = line.substring(0, split);
+		String expression = line.substring(split).strip();
+
+		//Each operation finishes before anything is appended, so a failure leaves the response empty
+		try {
+			switch (operation) {
+				case "1" :
+				case "infix-to-postfix" :
+					String postfix = NotationV2.convertInfixToPostfix(expression);
+					response.append("OK ").append(postfix);
+					break;
+				case "2" :
+				case "postfix-to-infix" :
+					String infix = NotationV2.convertPostfixToInfix(expression);
+					response.append("OK ").append(infix);
+					break;
+				case "3" :
+				case "eval-postfix" :
+					double postfixValue = NotationV2.evaluatePostfixExpression(expression);
+					response.append("OK ").append(postfixValue);
+					break;
+				case "4" :
+				case "eval-infix" :
+					double infixValue = NotationV2.evaluateInfixExpression(expression);
+					response.append("OK ").append(infixValue);
+					break;
+				default :
+					response.append("ERR ").append(NotationError.MALFORMED).append(" -1 Unknown operation '")
+							.append(operation).append("'; use infix-to-postfix, postfix-to-infix, eval-postfix or eval-infix");
+					break;
+			}
+		}
+		catch (InvalidNotationFormatExceptionV2 e) {
+			response.append("ERR ").append(e.getError()).append(' ').append(e.getPosition()).append(' ').append(e.getReason());
+		}
+	}
+}
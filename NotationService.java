@@ -0,0 +1,367 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A network evaluation service for large numbers of mostly idle connections.
+ *
+ * Each connection is served by its own virtual thread, so an idle connection costs a few kilobytes
+ * of heap rather than a platform thread. Virtual threads need Java 21. On older runtimes the service
+ * falls back to a platform thread per connection, which works the same but scales to fewer connections.
+ *
+ * Connection threads only do I/O. Every request they read is placed on a bounded admission Queue and
+ * carried out by a small, fixed pool of worker threads, one per core by default. When the workers fall
+ * behind and the Queue fills, connection threads wait for space, up to a time limit, and so stop reading
+ * from their sockets. That pushes back on clients through TCP flow control instead of piling up work in
+ * memory. A request that still cannot be admitted after the time limit is answered with an error.
+ *
+ * The protocol is NotationServer's: one request per line, one response per request, in order. The latency
+ * of every request, from the moment it is read to the moment its response is ready, is recorded in a
+ * histogram, as is the time requests spend waiting in the admission Queue.
+ * 
+ * Usage: java NotationService [--tcp port | --unix path] [--workers n] [--queue n] [--admit-ms n] [--cache n] [--metrics]
+ *
+ * @author Mike Meyers
+ *
+ */
+public class NotationService implements Closeable {
+
+	private static final String BUSY = "ERR " + NotationError.UNAVAILABLE + " -1 The service is overloaded; try again";
+	private static final String CLOSED = "ERR " + NotationError.UNAVAILABLE + " -1 The service is shutting down";
+
+	private final BlockingArrayQueue<Request> admission; //Requests waiting for a worker
+	private final Thread[] workers; //Threads carrying out requests
+	private final ExecutorService connections = newConnectionExecutor(); //One thread per open connection
+	private final long admitNanos; //Longest a request waits for a place in the admission Queue
+
+	private final LatencyHistogram latency = new LatencyHistogram(); //Time from reading a request to its response
+	private final LatencyHistogram queueWait = new LatencyHistogram(); //Time spent in the admission Queue
+	private final LongAdder rejected = new LongAdder(); //Requests turned away because the Queue stayed full
+	private final AtomicInteger openConnections = new AtomicInteger();
+	private volatile ServerSocketChannel listening; //The channel listen() is accepting on, or null
+	private volatile boolean running = true;
+
+	/**
+	 * Create a service and start its workers
+	 * @param workers the number of threads carrying out requests
+	 * @param queueSize the most requests that may wait for a worker
+	 * @param admitMillis the longest a request waits for a place in the Queue before it is turned away
+	 */
+	public NotationService(int workers, int queueSize, long admitMillis) {
+		this.admission = new BlockingArrayQueue<>(queueSize);
+		this.admitNanos = TimeUnit.MILLISECONDS.toNanos(admitMillis);
+		this.workers = new Thread[Math.max(1, workers)];
+		for (int i = 0; i < this.workers.length; i++) {
+			this.workers[i] = new Thread(this::work, "notation-worker-" + i);
+			this.workers[i].setDaemon(true);
+			this.workers[i].start();
+		}
+	}
+
+	/**
+	 * Start a service from the command line
+	 * @param args --tcp port (the default is port 7070) or --unix path, and optionally --workers n,
+	 * --queue n, --admit-ms n, --cache n and --metrics
+	 * @throws IOException if the socket cannot be opened
+	 */
+	public static void main(String[] args) throws IOException {
+		String mode = "--tcp";
+		String address = "7070";
+		int workers = Runtime.getRuntime().availableProcessors();
+		int queue = 4096;
+		long admitMillis = 1000;
+		for (int i = 0; i < args.length; i++) {
+			switch (args[i]) {
+				case "--tcp" :
+				case "--unix" :
+					mode = args[i];
+					address = args[++i];
+					break;
+				case "--workers" : workers = Integer.parseInt(args[++i]); break;
+				case "--queue" : queue = Integer.parseInt(args[++i]); break;
+				case "--admit-ms" : admitMillis = Long.parseLong(args[++i]); break;
+				case "--cache" : NotationV2.setExpressionCache(new CompiledExpressionCache(Integer.parseInt(args[++i]))); break;
+				case "--metrics" : NotationServer.enableMetrics(); break;
+				default :
+					System.err.println("Usage: java NotationService [--tcp port | --unix path] [--workers n] [--queue n] [--admit-ms n] [--cache n] [--metrics]");
+					System.exit(1);
+			}
+		}
+
+		NotationService service = new NotationService(workers, queue, admitMillis);
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> System.err.println(service.report())));
+		service.listen(open(mode, address));
+	}
+
+	/**
+	 * Open a listening socket
+	 * @param mode --tcp or --unix
+	 * @param address the port number or socket path
+	 * @return the bound server channel
+	 * @throws IOException if the socket cannot be opened, or a --unix path holds something other than a socket
+	 */
+	static ServerSocketChannel open(String mode, String address) throws IOException {
+		if (mode.equals("--unix")) {
+			Path path = Path.of(address);
+			NotationServer.removeStaleSocket(path);
+			ServerSocketChannel unix = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+			unix.bind(UnixDomainSocketAddress.of(path), 1024);
+			return unix;
+		}
+
+		//Only local clients may connect
+		ServerSocketChannel tcp = ServerSocketChannel.open();
+		tcp.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(address)), 1024);
+		return tcp;
+	}
+
+	/**
+	 * Accept connections until the channel or the service is closed, serving each on its own thread.
+	 * Closing the service closes the channel, which ends a wait for the next connection
+	 * @param server the bound server channel
+	 * @throws IOException if accepting a connection fails while the service is running
+	 */
+	public void listen(ServerSocketChannel server) throws IOException {
+		listening = server;
+		try (ServerSocketChannel channel = server) {
+			if (!running) return;
+			while (running && channel.isOpen()) {
+				SocketChannel client = channel.accept();
+				try {
+					connections.execute(() -> serve(client));
+				}
+				catch (RejectedExecutionException e) {
+					//The service closed while the connection was being accepted
+					client.close();
+					return;
+				}
+			}
+		}
+		catch (IOException e) {
+			if (running) throw e;
+		}
+		finally {
+			listening = null;
+		}
+	}
+
+	/**
+	 * Serve one connection until the client closes it
+	 * @param client the connected socket
+	 */
+	private void serve(SocketChannel client) {
+		openConnections.incrementAndGet();
+		try (SocketChannel connection = client) {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(Channels.newInputStream(connection), StandardCharsets.UTF_8));
+			BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(connection), StandardCharsets.UTF_8));
+
+			String line;
+			while ((line = reader.readLine()) != null) {
+				writer.append(submit(line)).append('\n');
+
+				//Pipelined requests that have already arrived are answered before anything is flushed
+				if (!reader.ready()) writer.flush();
+			}
+			writer.flush();
+		}
+		catch (IOException e) {
+			//The client went away; its connection is simply closed
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		finally {
+			openConnections.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Carry out one request on a worker, waiting for its response. Requests on one connection are
+	 * submitted one after another, so their responses stay in order
+	 * @param line the request line
+	 * @return the response line
+	 * @throws InterruptedException if the connection thread is interrupted while waiting
+	 */
+	String submit(String line) throws InterruptedException {
+		if (!running) return CLOSED;
+		Request request = new Request(line);
+		if (!admission.offer(request, admitNanos, TimeUnit.NANOSECONDS)) {
+			rejected.increment();
+			return BUSY;
+		}
+
+		//A request admitted while close() was draining the Queue would never be taken, so drain it again
+		if (!running) failPending();
+
+		String response;
+		try {
+			response = request.response.get();
+		}
+		catch (ExecutionException e) {
+			return CLOSED;
+		}
+		latency.record(System.nanoTime() - request.arrived);
+		return response;
+	}
+
+	/**
+	 * Take requests from the admission Queue and carry them out until the service is closed
+	 */
+	private void work() {
+		StringBuilder response = new StringBuilder();
+		while (running) {
+			Request request;
+			try {
+				request = admission.take();
+			}
+			catch (InterruptedException e) {
+				return;
+			}
+			queueWait.record(System.nanoTime() - request.arrived);
+			response.setLength(0);
+			try {
+				NotationServer.respond(request.line, response);
+				request.response.complete(response.toString());
+			}
+			catch (RuntimeException e) {
+				request.response.complete("ERR " + NotationError.MALFORMED + " -1 " + e);
+			}
+		}
+	}
+
+	/**
+	 * Retrieve the histogram of request latencies, from reading a request to its response being ready
+	 * @return the latency histogram
+	 */
+	public LatencyHistogram getLatency() {
+		return latency;
+	}
+
+	/**
+	 * Retrieve the histogram of time requests spent waiting for a worker
+	 * @return the queue wait histogram
+	 */
+	public LatencyHistogram getQueueWait() {
+		return queueWait;
+	}
+
+	/**
+	 * Determine how many requests were turned away because the admission Queue stayed full
+	 * @return the number of rejected requests
+	 */
+	public long getRejectedCount() {
+		return rejected.sum();
+	}
+
+	/**
+	 * Determine how many connections are being served
+	 * @return the number of open connections
+	 */
+	public int getOpenConnections() {
+		return openConnections.get();
+	}
+
+	/**
+	 * Summarize the service's connections, rejections and latencies
+	 * @return a multi-line report
+	 */
+	public String report() {
+		return "connections=" + getOpenConnections() + " queued=" + admission.size() + " rejected=" + getRejectedCount()
+				+ "\nlatency:    " + latency + "\nqueue wait: " + queueWait;
+	}
+
+	/**
+	 * Stop the workers and stop accepting connections. Requests still in the Queue are not carried out;
+	 * they are answered with an UNAVAILABLE error, so no connection thread is left waiting for them
+	 */
+	@Override
+	public void close() {
+		running = false;
+		for (Thread worker : workers) worker.interrupt();
+		failPending();
+
+		ServerSocketChannel channel = listening;
+		if (channel != null) {
+			try {
+				channel.close();
+			}
+			catch (IOException e) {
+				//The channel is closed either way
+			}
+		}
+		connections.shutdownNow();
+	}
+
+	/**
+	 * Empty the admission Queue, failing every request in it
+	 */
+	private void failPending() {
+		try {
+			Request request;
+			while ((request = admission.poll(0, TimeUnit.NANOSECONDS)) != null) {
+				request.response.completeExceptionally(new IllegalStateException("The service is shutting down"));
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Create an executor that runs each task on a new virtual thread, or on a new platform thread where
+	 * virtual threads are not available. The virtual thread executor is found reflectively, so this
+	 * class still compiles and runs on runtimes older than Java 21
+	 * @return the executor
+	 */
+	static ExecutorService newConnectionExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		}
+		catch (ReflectiveOperationException e) {
+			//Platform threads with small stacks, since a connection thread only reads, waits and writes
+			AtomicInteger number = new AtomicInteger();
+			ThreadFactory factory = task -> {
+				Thread thread = new Thread(null, task, "notation-connection-" + number.incrementAndGet(), 256 * 1024);
+				thread.setDaemon(true);
+				return thread;
+			};
+			return Executors.newCachedThreadPool(factory);
+		}
+	}
+
+	/**
+	 * One request waiting for, or being carried out by, a worker
+	 * @author Mike Meyers
+	 *
+	 */
+	private static final class Request {
+		final String line; //The request line
+		final long arrived = System.nanoTime(); //When the request was read
+		final CompletableFuture<String> response = new CompletableFuture<>(); //Completed with the response line
+
+		Request(String line) {
+			this.line = line;
+		}
+	}
+}
@@ -1,4 +1,8 @@
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.List;
 
 /**
  * Convert mathematical expressions in infix notation (a+b) to postfix notation (ab+) and vice-versa.
@@ -15,6 +19,14 @@ import java.util.ArrayList;
  */
 public class NotationV2 {
 	
+	//Each thread keeps one evaluator, so evaluating creates no new Stacks or lexers once warm
+	private static final ThreadLocal<ExpressionEvaluator> EVALUATORS = ThreadLocal.withInitial(ExpressionEvaluator::new);
+	
+	//Optional cache of compiled expressions, consulted by the String-based methods when installed
+	private static volatile CompiledExpressionCache expressionCache = null;
+	
+	static final String POSTFIX_BRACE = "Postfix expressions may not contain braces or parentheses";
+	
 	/**
 	 * Default constructor. Object has no variables to initialize.
 	 */
@@ -28,260 +40,219 @@ public class NotationV2 {
 	 * @throws InvalidNotationFormatExceptionV2 if the input format is found to be invalid
 	 */
 	public static String convertInfixToPostfix(String infix) throws InvalidNotationFormatExceptionV2 {
-		
-		//Confirm that the expression contains only valid characters
-		if(!hasValidCharacters(infix)) throw new InvalidNotationFormatExceptionV2(
-				"The expression may only contain numbers/letters, brackets/parens, and +, -, *, /, *");
-		
-		//Confirm that the expression does not contain unbalanced parentheses or brackets
-		if(!isBalanced(infix)) throw new InvalidNotationFormatExceptionV2();
-		
-		//Confirm that the expression does not contain sequential operators
-		if(hasSequentialOperators(infix)) throw new InvalidNotationFormatExceptionV2();
-		
-		/*
-		Convert the single String to a String array. 
-		First, by splitting the String into characters,
-		Then checking each character for an operator or operand.
-		This separates out multiple-digit and decimal operands as
-		Full numbers, instead of single characters
-		*/
-		char[] chars = infix.toCharArray();
-		ArrayList<String> strings = new ArrayList<>();
-		String nextDoubleString = "";
-		
-		//Flag if any entered decimal has an extra decimal point
-		Boolean hasDecimal = false;
-		
-		//Look through each character of the char array
-		for (char ch : chars) {
-			
-
-			//Pull out numbers and decimal points
-			if(Character.isDigit(ch) || ch == '.') {
-				if(ch == '.') {
-					if(hasDecimal == true) throw new InvalidNotationFormatException();
-					else hasDecimal = true;
-				}
-				nextDoubleString += ch;
-			}
-
-			//If an operator is encountered, add the previous number
-			//as a discrete String to the String array
-			else {
-				if(nextDoubleString.length() > 0) {
-					strings.add(nextDoubleString);
-					nextDoubleString = "";
-					hasDecimal = false;
-				}
-				
-				//Add the operator to the String array
-				strings.add(Character.toString(ch)); 
-			}
+		return convertInfixToPostfix((CharSequence) infix);
+	}
+	
+	/**
+	 * Convert an infix expression to a postfix expression,
+	 * reading it in place from any CharSequence, such as a StringBuilder or a CharBuffer
+	 * @param infix the infix-notated expression
+	 * @return the postfix-notated expression
+	 * @throws InvalidNotationFormatExceptionV2 if the input format is found to be invalid
+	 */
+	public static String convertInfixToPostfix(CharSequence infix) throws InvalidNotationFormatExceptionV2 {
+		if (!NotationMetrics.enabled) return convertInfixToPostfixUnmeasured(infix, null);
+		long start = System.nanoTime();
+		try {
+			NotationMetrics.Census census = NotationMetrics.census();
+			String postfix = convertInfixToPostfixUnmeasured(infix, census);
+			NotationMetrics.succeeded(NotationMetrics.INFIX_TO_POSTFIX, infix, start, census);
+			return postfix;
 		}
-		
-		//At conclusion of for loop, add the last Double in sequence
-		if(nextDoubleString.length() > 0) {
-			strings.add(nextDoubleString);
-			nextDoubleString = "";
+		catch (InvalidNotationFormatExceptionV2 e) {
+			NotationMetrics.failed(NotationMetrics.INFIX_TO_POSTFIX, infix, start, e);
+			throw e;
 		}
+	}
+	
+	/**
+	 * Convert an infix expression to a postfix expression,
+	 * reading ASCII bytes in place without decoding them into a String; other UTF-8 text is decoded first.
+	 * Error positions are offsets in the decoded text, which are byte offsets when the text is ASCII
+	 * @param bytes the array holding the infix-notated expression
+	 * @param offset index of the first byte of the expression
+	 * @param length number of bytes in the expression
+	 * @return the postfix-notated expression
+	 * @throws InvalidNotationFormatExceptionV2 if the input format is found to be invalid
+	 */
+	public static String convertInfixToPostfix(byte[] bytes, int offset, int length) throws InvalidNotationFormatExceptionV2 {
+		return convertInfixToPostfix(AsciiCharSequence.of(bytes, offset, length));
+	}
+	
+	/**
+	 * Convert an infix expression to a postfix expression,
+	 * reading the UTF-8 bytes between a buffer's position and limit, in place if they are ASCII.
+	 * The buffer's position is not changed. Error positions are offsets in the decoded text, which
+	 * are byte offsets from the buffer's position when the text is ASCII
+	 * @param buffer the buffer holding the infix-notated expression
+	 * @return the postfix-notated expression
+	 * @throws InvalidNotationFormatExceptionV2 if the input format is found to be invalid
+	 */
+	public static String convertInfixToPostfix(ByteBuffer buffer) throws InvalidNotationFormatExceptionV2 {
+		return convertInfixToPostfix(AsciiCharSequence.of(buffer));
+	}
+	
+	/**
+	 * Convert an infix expression to a postfix expression without recording metrics. Conversion is a single
+	 * linear pass that produces a new String, so it does not use the expression cache
+	 * @param infix the infix-notated expression to a postfix-notated expression
+	 * @param census receives the token count and stack depth of a valid expression; may be null
+	 * @return the postfix-notated expression
+	 * @throws InvalidNotationFormatExceptionV2 if the input format is found to be invalid
+	 */
+	private static String convertInfixToPostfixUnmeasured(CharSequence infix, NotationMetrics.Census census) throws InvalidNotationFormatExceptionV2 {
 		
-		//Create output String
-		String returnString = "";
-		
-		//Create separate Stack for operators
-		MyStack<String> operatorStack = new MyStack<>();
-		
-		//Iterate through the String array and sort the tokens
-		for (int i = 0; i < strings.size(); i++) {
-			try {
-			switch (strings.get(i)) {
-				case " " : //skip whitespace characters
-					break;
-				
-				case "^" : //exponents always get pushed
-					operatorStack.push(strings.get(i));
-					break;
-				
-				case "+" : // + and - operators have lowest precedence, so they get pushed unless there are already + or -
-				case "-" : // operators to begin with
-					while(!operatorStack.isEmpty() && !isBrace(operatorStack.peek())) {
-						returnString += operatorStack.pop() + " ";
-					}
-					operatorStack.push(strings.get(i));
-				break;
-				
-				case "*" : // *, /, +, and - operators will all push the stack. Only ^ operators have higher precedence
-				case "/" :
-					while(!operatorStack.isEmpty() && operatorStack.peek().equals("^")) {
-						returnString += operatorStack.pop() + " ";
-					}
-					while(!operatorStack.isEmpty() && (operatorStack.peek().equals("*") || operatorStack.peek().equals("/"))) {
-						returnString += operatorStack.pop() + " ";
-					}
-					operatorStack.push(strings.get(i));
-				break;
-				
-				case "(" : // ( parentheses and brackets always get pushed
-				case "{" :
-					operatorStack.push(strings.get(i));
-				break;
-				
-				case ")" : // ) parentheses pop all operators until the ( parenthesis is found
-					while(!(operatorStack.peek().equals("("))) {
-						returnString += operatorStack.pop() + " ";
-					}
-					operatorStack.pop(); //Pop the extra ( when it is found
-				break;
-					
-				case "}" : // } braces pop all operators until the { brace is found
-					while(!(operatorStack.peek().equals("{"))) {
-						returnString += operatorStack.pop() + " ";
-					}
-					operatorStack.pop(); //Pop the extra { when it is found
-				break;
-				
-				case "]" : // ] brackets pop all operators until the [ bracket is found
-					while(!(operatorStack.peek().equals("["))) {
-						returnString += operatorStack.pop() + " ";
-					}
-					operatorStack.pop(); //Pop the extra [ when it is found
-				break;
-				
-				//Anything that isn't an operator is by default an operand
-				default:
-					returnString += strings.get(i) + " ";
-			} //end for
-			}
-			
-			//If the stack underflows on a pop, we can assume the input expression was improperly formatted
-			catch (StackUnderflowException e) {
-				throw new InvalidNotationFormatExceptionV2();
-			}
+		//Postfix output is never longer than twice the input (each token plus one space),
+		//so the builder is sized once and never has to grow
+		StringBuilder postfix = new StringBuilder(infix.length() * 2);
+		ParseEvent event = new ParseEvent();
+		event.begin();
+		InvalidNotationFormatExceptionV2 failure = null;
+		try {
+			NotationLexer lexer = new NotationLexer(infix);
+			PostfixWriter writer = new PostfixWriter(postfix);
+			writePostfix(lexer, writer);
+			if (census != null) census.record(lexer.tokenCount(), writer.peakDepth());
 		}
-		
-		//When the for loop is complete, empty what remains in the Stack
-		while(!operatorStack.isEmpty()) returnString += operatorStack.pop();
-		
-		return returnString;
+		catch (InvalidNotationFormatExceptionV2 e) {
+			failure = e;
+			throw e;
+		}
+		finally {
+			event.finish("convertInfixToPostfix", infix, failure);
+		}
+		return postfix.toString();
+	}
+	
+	/**
+	 * Convert an infix expression to a postfix expression, writing the result to a caller-supplied destination.
+	 * The output is identical to convertInfixToPostfix(String), written in a single linear pass.
+	 * Validation happens during that pass, so if the expression is invalid, out may already hold part of the output
+	 * @param infix the infix-notated expression to a postfix-notated expression
+	 * @param out the Appendable to receive the postfix-notated expression
+	 * @throws InvalidNotationFormatExceptionV2 if the input format is found to be invalid
+	 * @throws IOException if the destination fails
+	 */
+	public static void convertInfixToPostfix(CharSequence infix, Appendable out) throws InvalidNotationFormatExceptionV2, IOException {
+		try {
+			writePostfix(new NotationLexer(infix), new PostfixWriter(out));
+		}
+		catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+	
+	/**
+	 * Validate an infix expression and report it in postfix order to a writer
+	 * @param lexer the lexer positioned at the start of the infix-notated expression
+	 * @param writer the PostfixWriter to receive the expression
+	 * @throws InvalidNotationFormatExceptionV2 if the input format is found to be invalid
+	 */
+	private static void writePostfix(NotationLexer lexer, PostfixWriter writer) throws InvalidNotationFormatExceptionV2 {
+		//Run the shared shunting-yard pass, which validates as it goes,
+		//with tokens copied straight from the source to the output
+		parseInfix(lexer, writer);
 	}
 	
 	/**
 	 * Convert an postfix expression to an infix expression
 	 * @param postfix the postfix-notated expression to an infix-notated expression
 	 * @return the infix-notated expression
-	 * @throws InvalidNotationFormatException if the input is found to be improperly formatted
+	 * @throws InvalidNotationFormatExceptionV2 if the input is found to be improperly formatted
 	 */
 	public static String convertPostfixToInfix(String postfix) throws InvalidNotationFormatExceptionV2{
-		
-		//Check that the expression contains only valid characters
-		if(!hasValidCharacters(postfix)) throw new InvalidNotationFormatExceptionV2(
-				"The expression may only contain numbers/letters, brackets/parens, and +, -, *, /, *");
-		
-		//Check that the expression is balanced in terms of delimiters
-		if(!isBalanced(postfix)) throw new InvalidNotationFormatExceptionV2();
-		
-		/*
-		Convert the single String to a String array. 
-		First, by splitting the String into characters,
-		Then checking each character for an operator or operand.
-		This separates out multiple-digit and decimal operands as
-		full numbers, instead of single characters
-		*/
-		char[] chars = postfix.toCharArray();
-		ArrayList<String> strings = new ArrayList<>();
-		String nextDoubleString = "";
-		
-		//Flag to verify if a decimal number has an extra decimal point
-		boolean hasDecimal = false;
-		
-		//Look through each character of the char array
-		for (char ch : chars) {
-			//Pull out numbers and decimal points
-			if(Character.isDigit(ch) || ch == '.') {
-				if (ch == '.') {
-					if (hasDecimal == true) throw new InvalidNotationFormatException();
-					else hasDecimal = true;
-				}
-				nextDoubleString += ch;
-			}
-
-			//If an operator is encountered, add the previous number
-			//as a discrete String to the String array
-			else {
-				if(nextDoubleString.length() > 0) {
-					strings.add(nextDoubleString);
-					nextDoubleString = "";
-					hasDecimal = false;
-				}
-				
-				//Add the operator to the String array
-				strings.add(Character.toString(ch)); 
-			}
+		return convertPostfixToInfix((CharSequence) postfix);
+	}
+	
+	/**
+	 * Convert a postfix expression to an infix expression,
+	 * reading it in place from any CharSequence, such as a StringBuilder or a CharBuffer
+	 * @param postfix the postfix-notated expression
+	 * @return the infix-notated expression
+	 * @throws InvalidNotationFormatExceptionV2 if the input is found to be improperly formatted
+	 */
+	public static String convertPostfixToInfix(CharSequence postfix) throws InvalidNotationFormatExceptionV2 {
+		if (!NotationMetrics.enabled) return convertPostfixToInfix(postfix, false, null);
+		long start = System.nanoTime();
+		try {
+			NotationMetrics.Census census = NotationMetrics.census();
+			String infix = convertPostfixToInfix(postfix, false, census);
+			NotationMetrics.succeeded(NotationMetrics.POSTFIX_TO_INFIX, postfix, start, census);
+			return infix;
 		}
-		
-		//At conclusion of for loop, add the last Double in sequence (if it exists)
-		if(nextDoubleString.length() > 0) {
-			strings.add(nextDoubleString);
-			nextDoubleString = "";
-			hasDecimal = false;
+		catch (InvalidNotationFormatExceptionV2 e) {
+			NotationMetrics.failed(NotationMetrics.POSTFIX_TO_INFIX, postfix, start, e);
+			throw e;
 		}
+	}
+	
+	/**
+	 * Convert a postfix expression to an infix expression,
+	 * reading ASCII bytes in place without decoding them into a String; other UTF-8 text is decoded first.
+	 * Error positions are offsets in the decoded text, which are byte offsets when the text is ASCII
+	 * @param bytes the array holding the postfix-notated expression
+	 * @param offset index of the first byte of the expression
+	 * @param length number of bytes in the expression
+	 * @return the infix-notated expression
+	 * @throws InvalidNotationFormatExceptionV2 if the input is found to be improperly formatted
+	 */
+	public static String convertPostfixToInfix(byte[] bytes, int offset, int length) throws InvalidNotationFormatExceptionV2 {
+		return convertPostfixToInfix(AsciiCharSequence.of(bytes, offset, length));
+	}
+	
+	/**
+	 * Convert a postfix expression to an infix expression,
+	 * reading the UTF-8 bytes between a buffer's position and limit, in place if they are ASCII.
+	 * The buffer's position is not changed. Error positions are offsets in the decoded text, which
+	 * are byte offsets from the buffer's position when the text is ASCII
+	 * @param buffer the buffer holding the postfix-notated expression
+	 * @return the infix-notated expression
+	 * @throws InvalidNotationFormatExceptionV2 if the input is found to be improperly formatted
+	 */
+	public static String convertPostfixToInfix(ByteBuffer buffer) throws InvalidNotationFormatExceptionV2 {
+		return convertPostfixToInfix(AsciiCharSequence.of(buffer));
+	}
+	
+	/**
+	 * Convert an postfix expression to an infix expression.
+	 * The expression is parsed into a compact tree and then written out in a single linear pass
+	 * @param postfix the postfix-notated expression to an infix-notated expression
+	 * @param minimalParentheses true to insert only the parentheses that precedence and associativity require;
+	 * false to parenthesize every + and - subexpression, as convertPostfixToInfix(String) does
+	 * @return the infix-notated expression
+	 * @throws InvalidNotationFormatExceptionV2 if the input is found to be improperly formatted
+	 */
+	public static String convertPostfixToInfix(CharSequence postfix, boolean minimalParentheses) throws InvalidNotationFormatExceptionV2{
+		return convertPostfixToInfix(postfix, minimalParentheses, null);
+	}
+	
+	/**
+	 * Convert an postfix expression to an infix expression, reporting the size of a valid expression
+	 * @param postfix the postfix-notated expression to an infix-notated expression
+	 * @param minimalParentheses true to insert only the parentheses that precedence and associativity require
+	 * @param census receives the token count and stack depth of a valid expression; may be null
+	 * @return the infix-notated expression
+	 * @throws InvalidNotationFormatExceptionV2 if the input is found to be improperly formatted
+	 */
+	private static String convertPostfixToInfix(CharSequence postfix, boolean minimalParentheses, NotationMetrics.Census census)
+			throws InvalidNotationFormatExceptionV2{
 		
-		//Create Stack for operands and variables for operation
-		MyStack<String> operandStack = new MyStack<>();
-		String val1, val2;
-		
-		/*
-		Iterate through the String array. Operands will be added to their Stack.
-		As operators are found, pop the previous two operands and add
-		on to the return String to form the infix expression
-		*/
-		for(int i = 0; i < strings.size(); i++) {
-			
-			try {
-				
-				switch (strings.get(i)) {
-				
-				//Skip whitespace
-				case " " :
-					break;
-				
-				case "+" : //Add and subtract operators operate on the previous two items in the stack
-				case "-" : //To preserve precedence, the result will always be put into parentheses
-					val1 = operandStack.pop();
-					val2 = operandStack.pop();
-					operandStack.push("(" + val2 + " " + strings.get(i) + " " + val1 + ")"); //Result pushes back onto stack
-					break;
-					
-				case "*" : //Multiply and divide operators operate on the previous two items in the stack
-				case "/" : //Precedence is automatically preserved in this manner
-					val1 = operandStack.pop();
-					val2 = operandStack.pop();
-					operandStack.push(val2 + " " + strings.get(i) + " " + val1); //Result pushes back onto stack
-					break;
-					
-				case "^" : //Exponent operator operates on the previous two items in the stack
-					val1 = operandStack.pop();
-					val2 = operandStack.pop();
-					operandStack.push(val2 + " ^ " + val1); //Result pushes back onto stack
-					break;
-					
-				default : //Operands go onto the operand stack in the order they are encountered
-					operandStack.push(strings.get(i));
-					break;
-				}
-			}
-			
-			//If the stack underflows because an operand wasn't present, the input expression was
-			//improperly formatted
-			catch (StackUnderflowException e) {
-				throw new InvalidNotationFormatExceptionV2();
-			}
+		//Build the expression tree, which rejects invalid characters and braces as it goes, then serialize it once
+		ParseEvent event = new ParseEvent();
+		event.begin();
+		InvalidNotationFormatExceptionV2 failure = null;
+		try {
+			ExpressionTree tree = ExpressionTree.parsePostfix(postfix);
+			if (census != null) census.record(tree.tokenCount(), tree.peakDepth());
+			return tree.toInfix(minimalParentheses);
+		}
+		catch (InvalidNotationFormatExceptionV2 e) {
+			failure = e;
+			throw e;
+		}
+		finally {
+			event.finish("convertPostfixToInfix", postfix, failure);
 		}
-		
-		//We are left with a single Node on the stack, which is our final, full expression
-		return operandStack.peek();
-		
 	}
 	
 	/**
@@ -291,254 +262,535 @@ public class NotationV2 {
 	 * @throws InvalidNotationFormatExceptionV2 if infixExpr is found to be improperly formatted
 	 */
 	public static double evaluateInfixExpression(String infixExpr) throws InvalidNotationFormatExceptionV2{
-
-		//Confirm that the expression consists of only valid characters
-		if(!hasValidCharacters(infixExpr)) throw new InvalidNotationFormatExceptionV2(
-				"The expression may only contain numbers/letters, brackets/parens, and +, -, *, /, *");
-		
-		//Confirm that the expression does not have any unbalanced braces or parens
-		if(!isBalanced(infixExpr)) throw new InvalidNotationFormatExceptionV2();
-		
-		//Confirm that the expression does not have any sequential operators
-		if(hasSequentialOperators(infixExpr)) throw new InvalidNotationFormatExceptionV2();
-		
-		//Create Stacks for holding operators and operands
-		MyStack<String> operands = new MyStack<>();
-		MyStack<String> operators = new MyStack<>();
-		
-		//Convert String to a character array
-		char[] chars = infixExpr.toCharArray();
-		
-		//Create ArrayList for holding String tokens
-		ArrayList<String> strings = new ArrayList<>();
-		
-		//Create empty String for building operands that are found
-		String nextDoubleString = "";
-		
-		//Flag to verify that each decimal number only has one decimal point
-		boolean hasDecimal = false;
+		return evaluateInfixExpression((CharSequence) infixExpr);
+	}
+	
+	/**
+	 * Evaluate an infix expression numerically,
+	 * reading it in place from any CharSequence, such as a StringBuilder or a CharBuffer
+	 * @param infixExpr the infix-notated expression
+	 * @return the evaluated expression value
+	 * @throws InvalidNotationFormatExceptionV2 if the expression is found to be improperly formatted
+	 */
+	public static double evaluateInfixExpression(CharSequence infixExpr) throws InvalidNotationFormatExceptionV2 {
+		if (!NotationMetrics.enabled) return evaluateInfixUnmeasured(infixExpr, null);
+		long start = System.nanoTime();
+		try {
+			NotationMetrics.Census census = NotationMetrics.census();
+			double value = evaluateInfixUnmeasured(infixExpr, census);
+			NotationMetrics.succeeded(NotationMetrics.EVALUATE_INFIX, infixExpr, start, census);
+			return value;
+		}
+		catch (InvalidNotationFormatExceptionV2 e) {
+			NotationMetrics.failed(NotationMetrics.EVALUATE_INFIX, infixExpr, start, e);
+			throw e;
+		}
+	}
+	
+	/**
+	 * Evaluate an infix expression numerically,
+	 * reading ASCII bytes in place without decoding them into a String; other UTF-8 text is decoded first.
+	 * Error positions are offsets in the decoded text, which are byte offsets when the text is ASCII
+	 * @param bytes the array holding the infix-notated expression
+	 * @param offset index of the first byte of the expression
+	 * @param length number of bytes in the expression
+	 * @return the evaluated expression value
+	 * @throws InvalidNotationFormatExceptionV2 if the expression is found to be improperly formatted
+	 */
+	public static double evaluateInfixExpression(byte[] bytes, int offset, int length) throws InvalidNotationFormatExceptionV2 {
+		return evaluateInfixExpression(AsciiCharSequence.of(bytes, offset, length));
+	}
+	
+	/**
+	 * Evaluate an infix expression numerically,
+	 * reading the UTF-8 bytes between a buffer's position and limit, in place if they are ASCII.
+	 * The buffer's position is not changed. Error positions are offsets in the decoded text, which
+	 * are byte offsets from the buffer's position when the text is ASCII
+	 * @param buffer the buffer holding the infix-notated expression
+	 * @return the evaluated expression value
+	 * @throws InvalidNotationFormatExceptionV2 if the expression is found to be improperly formatted
+	 */
+	public static double evaluateInfixExpression(ByteBuffer buffer) throws InvalidNotationFormatExceptionV2 {
+		return evaluateInfixExpression(AsciiCharSequence.of(buffer));
+	}
+	
+	/**
+	 * Evaluate an infix expression, consulting the expression cache if one is installed
+	 * @param infixExpr the infix-notated expression
+	 * @param census receives the token count and stack depth of a valid expression; may be null
+	 * @return the evaluated expression value
+	 * @throws InvalidNotationFormatExceptionV2 if the expression is found to be improperly formatted
+	 */
+	private static double evaluateInfixUnmeasured(CharSequence infixExpr, NotationMetrics.Census census) throws InvalidNotationFormatExceptionV2{
 		
-		//Look through each character of the char array
-		for (char ch : chars) {
-			//Pull out numbers and decimal points
-			if(Character.isDigit(ch) || ch == '.') {
-				if (ch == '.') {
-					if (hasDecimal == true) throw new InvalidNotationFormatException();
-					else hasDecimal = true;
-				}
-				nextDoubleString += ch;
+		EvaluateEvent event = new EvaluateEvent();
+		event.begin();
+		InvalidNotationFormatExceptionV2 failure = null;
+		try {
+			//Use the cached program if a cache is installed
+			CompiledExpressionCache cache = expressionCache;
+			event.cached = cache != null;
+			if (cache != null) {
+				//A hit is not parsed at all, so the program carries its source's size. Cached programs are
+				//never optimized, so their stack space is exactly the operand stack's peak depth
+				CompiledExpression compiled = cache.getInfix(infixExpr.toString(), true);
+				if (census != null) census.record(compiled.tokenCount(), compiled.getMaxDepth());
+				return compiled.evaluate();
 			}
-
-			//If an operator is encountered, add the previous number
-			//as a discrete String to the String array
-			else {
-				if(nextDoubleString.length() > 0) {
-					strings.add(nextDoubleString);
-					nextDoubleString = "";
-					hasDecimal = false;
-				}
-				
-				//Add the operator to the String array
-				strings.add(Character.toString(ch)); 
+			
+			//Validate and evaluate in one pass with this thread's reusable lexer and primitive Stacks
+			ExpressionEvaluator evaluator = EVALUATORS.get();
+			double value = evaluator.evaluateInfix(infixExpr);
+			if (census != null) census.record(evaluator.tokenCount(), evaluator.peakDepth());
+			return value;
+		}
+		catch (InvalidNotationFormatExceptionV2 e) {
+			failure = e;
+			throw e;
+		}
+		finally {
+			event.finish("evaluateInfixExpression", infixExpr, failure);
+		}
+	}
+	
+	/**
+	 * Read a postfix-notated expression and evaluate it numerically
+	 * @param postfixExpr the postfix-notated expression for evaluation
+	 * @return the evaluated expression value
+	 * @throws InvalidNotationFormatExceptionV2 if the input is found to be improperly formatted
+	 */
+	public static double evaluatePostfixExpression(String postfixExpr) throws InvalidNotationFormatExceptionV2{
+		return evaluatePostfixExpression((CharSequence) postfixExpr);
+	}
+	
+	/**
+	 * Evaluate a postfix expression numerically,
+	 * reading it in place from any CharSequence, such as a StringBuilder or a CharBuffer
+	 * @param postfixExpr the postfix-notated expression
+	 * @return the evaluated expression value
+	 * @throws InvalidNotationFormatExceptionV2 if the expression is found to be improperly formatted
+	 */
+	public static double evaluatePostfixExpression(CharSequence postfixExpr) throws InvalidNotationFormatExceptionV2 {
+		if (!NotationMetrics.enabled) return evaluatePostfixUnmeasured(postfixExpr, null);
+		long start = System.nanoTime();
+		try {
+			NotationMetrics.Census census = NotationMetrics.census();
+			double value = evaluatePostfixUnmeasured(postfixExpr, census);
+			NotationMetrics.succeeded(NotationMetrics.EVALUATE_POSTFIX, postfixExpr, start, census);
+			return value;
+		}
+		catch (InvalidNotationFormatExceptionV2 e) {
+			NotationMetrics.failed(NotationMetrics.EVALUATE_POSTFIX, postfixExpr, start, e);
+			throw e;
+		}
+	}
+	
+	/**
+	 * Evaluate a postfix expression numerically,
+	 * reading ASCII bytes in place without decoding them into a String; other UTF-8 text is decoded first.
+	 * Error positions are offsets in the decoded text, which are byte offsets when the text is ASCII
+	 * @param bytes the array holding the postfix-notated expression
+	 * @param offset index of the first byte of the expression
+	 * @param length number of bytes in the expression
+	 * @return the evaluated expression value
+	 * @throws InvalidNotationFormatExceptionV2 if the expression is found to be improperly formatted
+	 */
+	public static double evaluatePostfixExpression(byte[] bytes, int offset, int length) throws InvalidNotationFormatExceptionV2 {
+		return evaluatePostfixExpression(AsciiCharSequence.of(bytes, offset, length));
+	}
+	
+	/**
+	 * Evaluate a postfix expression numerically,
+	 * reading the UTF-8 bytes between a buffer's position and limit, in place if they are ASCII.
+	 * The buffer's position is not changed. Error positions are offsets in the decoded text, which
+	 * are byte offsets from the buffer's position when the text is ASCII
+	 * @param buffer the buffer holding the postfix-notated expression
+	 * @return the evaluated expression value
+	 * @throws InvalidNotationFormatExceptionV2 if the expression is found to be improperly formatted
+	 */
+	public static double evaluatePostfixExpression(ByteBuffer buffer) throws InvalidNotationFormatExceptionV2 {
+		return evaluatePostfixExpression(AsciiCharSequence.of(buffer));
+	}
+	
+	/**
+	 * Evaluate a postfix expression, consulting the expression cache if one is installed
+	 * @param postfixExpr the postfix-notated expression
+	 * @param census receives the token count and stack depth of a valid expression; may be null
+	 * @return the evaluated expression value
+	 * @throws InvalidNotationFormatExceptionV2 if the expression is found to be improperly formatted
+	 */
+	private static double evaluatePostfixUnmeasured(CharSequence postfixExpr, NotationMetrics.Census census) throws InvalidNotationFormatExceptionV2{
+		
+		EvaluateEvent event = new EvaluateEvent();
+		event.begin();
+		InvalidNotationFormatExceptionV2 failure = null;
+		try {
+			//Use the cached program if a cache is installed
+			CompiledExpressionCache cache = expressionCache;
+			event.cached = cache != null;
+			if (cache != null) {
+				//A hit is not parsed at all, so the program carries its source's size. Cached programs are
+				//never optimized, so their stack space is exactly the operand stack's peak depth
+				CompiledExpression compiled = cache.getPostfix(postfixExpr.toString(), true);
+				if (census != null) census.record(compiled.tokenCount(), compiled.getMaxDepth());
+				return compiled.evaluate();
 			}
+			
+			//Validate and evaluate in one pass with this thread's reusable lexer and primitive Stacks
+			ExpressionEvaluator evaluator = EVALUATORS.get();
+			double value = evaluator.evaluatePostfix(postfixExpr);
+			if (census != null) census.record(evaluator.tokenCount(), evaluator.peakDepth());
+			return value;
+		}
+		catch (InvalidNotationFormatExceptionV2 e) {
+			failure = e;
+			throw e;
 		}
+		finally {
+			event.finish("evaluatePostfixExpression", postfixExpr, failure);
+		}
+	}
+	
+	/**
+	 * Evaluate an infix expression without throwing. Invalid input is reported in the result, with the
+	 * error code, position and reason of the first problem found
+	 * @param infixExpr the infix-notated expression for evaluation
+	 * @return the value of the expression, or the reason it could not be evaluated
+	 */
+	public static NotationResult tryEvaluateInfixExpression(CharSequence infixExpr) {
+		NotationResult result = new NotationResult();
+		EVALUATORS.get().tryEvaluateInfix(infixExpr, result);
+		return result;
+	}
+	
+	/**
+	 * Evaluate a postfix expression without throwing. Invalid input is reported in the result, with the
+	 * error code, position and reason of the first problem found
+	 * @param postfixExpr the postfix-notated expression for evaluation
+	 * @return the value of the expression, or the reason it could not be evaluated
+	 */
+	public static NotationResult tryEvaluatePostfixExpression(CharSequence postfixExpr) {
+		NotationResult result = new NotationResult();
+		EVALUATORS.get().tryEvaluatePostfix(postfixExpr, result);
+		return result;
+	}
+	
+	/**
+	 * Read a postfix-notated expression from a channel and evaluate it numerically. The expression is
+	 * read and evaluated in chunks, so memory use depends on the depth of the expression rather than its size
+	 * @param postfixExpr the channel supplying the postfix-notated expression as ASCII text
+	 * @return the evaluated expression value
+	 * @throws IOException if the channel cannot be read
+	 * @throws InvalidNotationFormatExceptionV2 if the input is found to be improperly formatted
+	 */
+	public static double evaluatePostfixExpression(ReadableByteChannel postfixExpr) throws IOException, InvalidNotationFormatExceptionV2 {
+		return new PostfixStreamEvaluator().evaluate(postfixExpr);
+	}
+	
+	/**
+	 * Evaluate many infix expressions in one call. One set of Stacks and one lexer is reused for the
+	 * whole batch, and failures are reported as error codes instead of exceptions
+	 * @param expressions the infix-notated expressions for evaluation
+	 * @param results receives the value of each expression at its own index, or NaN if it failed
+	 * @param errors receives the NotationError code of each expression at its own index; may be null
+	 * @return the number of expressions that failed
+	 */
+	public static int evaluateBatch(CharSequence[] expressions, double[] results, int[] errors) {
+		return EVALUATORS.get().evaluateBatch(expressions, 0, expressions.length, results, errors);
+	}
+	
+	/**
+	 * Evaluate many infix expressions in parallel on the common ForkJoinPool. Results and error codes
+	 * are identical to evaluateBatch, and are written in input order
+	 * @param expressions the infix-notated expressions for evaluation
+	 * @param results receives the value of each expression at its own index, or NaN if it failed
+	 * @param errors receives the NotationError code of each expression at its own index; may be null
+	 * @return the number of expressions that failed
+	 */
+	public static int evaluateBatchParallel(CharSequence[] expressions, double[] results, int[] errors) {
+		return new ParallelBatchEvaluator().evaluate(expressions, results, errors);
+	}
+	
+	/**
+	 * Evaluate many infix expressions in one call. One set of Stacks and one lexer is reused for the
+	 * whole batch
+	 * @param expressions the infix-notated expressions for evaluation
+	 * @return the value of each expression, in order. Expressions that fail evaluate to NaN
+	 */
+	public static double[] evaluateBatch(List<String> expressions) {
+		CharSequence[] array = expressions.toArray(new CharSequence[0]);
+		double[] results = new double[array.length];
+		evaluateBatch(array, results, null);
+		return results;
+	}
+	
+	/**
+	 * Install a cache of compiled expressions in front of evaluateInfixExpression
+	 * and evaluatePostfixExpression. Repeated expressions are then validated and parsed only once
+	 * @param cache the cache to use, or null to stop caching
+	 */
+	public static void setExpressionCache(CompiledExpressionCache cache) {
+		expressionCache = cache;
+	}
+	
+	/**
+	 * Retrieve the installed expression cache
+	 * @return the cache in use, or null if caching is off
+	 */
+	public static CompiledExpressionCache getExpressionCache() {
+		return expressionCache;
+	}
+	
+	/**
+	 * Retrieve the calling thread's reusable evaluator
+	 * @return the ExpressionEvaluator belonging to this thread
+	 */
+	static ExpressionEvaluator evaluator() {
+		return EVALUATORS.get();
+	}
+	
+	/**
+	 * Validate and parse an infix expression once, so that it may be evaluated many times
+	 * without being parsed again
+	 * @param infix the infix-notated expression to compile
+	 * @return the compiled expression
+	 * @throws InvalidNotationFormatExceptionV2 if the input is found to be improperly formatted
+	 */
+	public static CompiledExpression compile(String infix) throws InvalidNotationFormatExceptionV2 {
+		return compile(infix, false);
+	}
+	
+	/**
+	 * Validate and parse an infix expression once, optionally reporting a failure as evaluating it would
+	 * @param infix the infix-notated expression to compile
+	 * @param asEvaluated true to report the first error evaluateInfixExpression would, which is the first
+	 * variable if one was read before the problem, rather than the problem itself
+	 * @return the compiled expression
+	 * @throws InvalidNotationFormatExceptionV2 if the input is found to be improperly formatted
+	 */
+	static CompiledExpression compile(String infix, boolean asEvaluated) throws InvalidNotationFormatExceptionV2 {
 		
-		//At conclusion of for loop, add the last Double in sequence
-		if(nextDoubleString.length() > 0) {
-			strings.add(nextDoubleString);
-			nextDoubleString = "";
-			hasDecimal = false;
+		//Validate and parse the expression into a postfix program in one pass
+		ParseEvent event = new ParseEvent();
+		event.begin();
+		InvalidNotationFormatExceptionV2 failure = null;
+		ProgramBuilder builder = new ProgramBuilder();
+		try {
+			NotationLexer lexer = new NotationLexer(infix);
+			parseInfix(lexer, builder);
+			return builder.build(infix, lexer.tokenCount());
+		}
+		catch (InvalidNotationFormatExceptionV2 e) {
+			failure = asEvaluated ? builder.evaluationError(e) : e;
+			throw failure;
 		}
+		finally {
+			event.finish("compile", infix, failure);
+		}
+	}
+	
+	/**
+	 * Validate and parse a postfix expression once, so that it may be evaluated many times
+	 * without being parsed again
+	 * @param postfix the postfix-notated expression to compile
+	 * @return the compiled expression
+	 * @throws InvalidNotationFormatExceptionV2 if the input is found to be improperly formatted
+	 */
+	public static CompiledExpression compilePostfix(String postfix) throws InvalidNotationFormatExceptionV2 {
+		return compilePostfix(postfix, false);
+	}
+	
+	/**
+	 * Validate and parse a postfix expression once, optionally reporting a failure as evaluating it would
+	 * @param postfix the postfix-notated expression to compile
+	 * @param asEvaluated true to report the first error evaluatePostfixExpression would, which is the first
+	 * variable if one was read before the problem, rather than the problem itself
+	 * @return the compiled expression
+	 * @throws InvalidNotationFormatExceptionV2 if the input is found to be improperly formatted
+	 */
+	static CompiledExpression compilePostfix(String postfix, boolean asEvaluated) throws InvalidNotationFormatExceptionV2 {
 		
-		//Iterate through the ArrayList of tokens and separate into Stacks
+		//Postfix tokens are already in program order, so they go straight to the builder
+		ParseEvent event = new ParseEvent();
+		event.begin();
+		InvalidNotationFormatExceptionV2 failure = null;
+		ProgramBuilder builder = new ProgramBuilder();
 		try {
-		for(String str : strings) {
-			switch (str) {
-				
-				//Skip whitespace
-				case " " : 
-					break;
+			NotationLexer lexer = new NotationLexer(postfix);
+			parsePostfix(lexer, builder);
+			return builder.build(postfix, lexer.tokenCount());
+		}
+		catch (InvalidNotationFormatExceptionV2 e) {
+			failure = asEvaluated ? builder.evaluationError(e) : e;
+			throw failure;
+		}
+		finally {
+			event.finish("compilePostfix", postfix, failure);
+		}
+	}
+	
+	/**
+	 * Parse an infix expression with the shunting-yard algorithm, reporting each operand and operator
+	 * to a sink in postfix order
+	 * @param lexer the lexer positioned at the start of the infix expression
+	 * @param sink the PostfixSink to receive the expression in postfix order
+	 * @throws InvalidNotationFormatExceptionV2 if the input is found to be improperly formatted
+	 */
+	static void parseInfix(NotationLexer lexer, PostfixSink sink) throws InvalidNotationFormatExceptionV2 {
+		parseInfix(lexer, new OperatorStack(), sink);
+	}
+	
+	/**
+	 * Parse an infix expression with the shunting-yard algorithm, reporting each operand and operator
+	 * to a sink in postfix order
+	 * @param lexer the lexer positioned at the start of the infix expression
+	 * @param operators an empty Stack to hold operators and open braces waiting to be released
+	 * @param sink the PostfixSink to receive the expression in postfix order
+	 * @throws InvalidNotationFormatExceptionV2 if the input is found to be improperly formatted
+	 */
+	static void parseInfix(NotationLexer lexer, OperatorStack operators, PostfixSink sink) throws InvalidNotationFormatExceptionV2 {
+		NotationResult result = new NotationResult();
+		if (!parseInfix(lexer, operators, sink, result)) throw result.exception();
+	}
+	
+	/**
+	 * Parse an infix expression with the shunting-yard algorithm, reporting each operand and operator
+	 * to a sink in postfix order, without throwing.
+	 * 
+	 * The expression is validated during the same pass: the parser alternates between expecting an operand
+	 * (or open brace) and expecting an operator (or close brace), and braces are matched as they close.
+	 * The first token that breaks those rules, or that the sink rejects, is recorded with its offset
+	 * before the rest is read
+	 * @param lexer the lexer positioned at the start of the infix expression
+	 * @param operators an empty Stack to hold operators and open braces waiting to be released
+	 * @param sink the PostfixSink to receive the expression in postfix order
+	 * @param result receives the error code, position and reason of the first problem found
+	 * @return true if the whole expression was parsed, false if a problem was recorded in result
+	 */
+	static boolean parseInfix(NotationLexer lexer, OperatorStack operators, PostfixSink sink, NotationResult result) {
+		boolean expectOperand = true; //True at the start and after an operator or open brace
+		int previous = NotationLexer.END; //Type of the previous token
+		int depth = 0; //Number of open braces on the Stack
+		
+		int type;
+		for (type = lexer.scan(); type != NotationLexer.END; previous = type, type = lexer.scan()) {
+			char ch = lexer.tokenChar();
 			
-				case "+" :
-				case "-" :
-					if (operators.isEmpty()) operators.push(str);
-					else {
-						while (!operators.isEmpty() && (!isBrace(operators.peek()))) {
-							String val1 = operands.pop();
-							String val2 = operands.pop();
-							double result = operate(val1, val2, operators.pop());
-							operands.push(Double.toString(result));
-						}
-						operators.push(str);
-					}
-					break;
+			switch (type) {
+				case NotationLexer.OPERATOR :
+					//An operator must follow an operand or close brace
+					if (expectOperand) return result.fail(previous == NotationLexer.END
+							? NotationError.MISSING_OPERAND : NotationError.SEQUENTIAL_OPERATORS, lexer.tokenStart());
 					
-				case "*" :
-				case "/" :
-					if (operators.isEmpty()) operators.push(str);
-					else {
-						while (!operators.isEmpty() && !(operators.peek().equals("+") || operators.peek().equals("-"))) {
-							String val1 = operands.pop();
-							String val2 = operands.pop();
-							double result = operate(val1, val2, operators.pop());
-							operands.push(Double.toString(result));
+					//Exponents are right-associative and always get pushed. Other operators first release
+					//every operator of equal or higher precedence down to the nearest brace
+					if (ch != '^') {
+						while (!operators.isEmpty() && precedence(operators.peek()) >= precedence(ch)) {
+							if (!release(operators, sink, result)) return false;
 						}
-						operators.push(str);
 					}
-					break;
-					
-				case "^" :
-					operators.push(str);
+					operators.push(ch, lexer.tokenStart());
+					expectOperand = true;
 					break;
 				
-				case "(" : //Open parens and braces go onto the operator stack
-				case "{" :
-				case "[" :
-					operators.push(str);
+				case NotationLexer.OPEN_BRACE : //Open parens and braces always get pushed
+					if (!expectOperand) return result.fail(NotationError.MISSING_OPERATOR, lexer.tokenStart());
+					operators.push(ch, lexer.tokenStart());
+					depth++;
 					break;
-			
-				case ")" : //When a closed paren or brace is found, go through the operators in the stack and operate
-				case "}" : //on the top two operands of the operand stack. The result goes on top of the operand stack
-				case "]" :
+				
+				case NotationLexer.CLOSE_BRACE : //Close braces release all operators back to the matching open brace
+					if (depth == 0) return result.fail(NotationError.UNBALANCED, lexer.tokenStart());
+					if (expectOperand) return result.fail(previous == NotationLexer.OPERATOR
+							? NotationError.SEQUENTIAL_OPERATORS : NotationError.MISSING_OPERAND, lexer.tokenStart());
+					
+					//Every operator above the nearest brace belongs inside it
+					char open = NotationLexer.openingBrace(ch);
 					while (!isBrace(operators.peek())) {
-						String operator = operators.pop();
-						String val1 = operands.pop();
-						String val2 = operands.pop();
-						double result = operate(val1, val2, operator);
-						operands.push(Double.toString(result));
+						if (!release(operators, sink, result)) return false;
 					}
-					operators.pop(); //Pop the open brace from the stack once found
+					if (operators.pop() != open) return result.fail(NotationError.UNBALANCED, lexer.tokenStart());
+					depth--;
 					break;
-				//Operands get pushed onto the stack as they are encountered
-				default:
-					operands.push(str);
+				
+				case NotationLexer.INVALID :
+					return result.fail(lexer.error(), lexer.errorPosition());
+				
+				//Anything else is an operand
+				default :
+					if (!expectOperand) return result.fail(NotationError.MISSING_OPERATOR, lexer.tokenStart());
+					if (!sink.operand(lexer, result)) return false;
+					expectOperand = false;
 					break;
-			} //end switch
-		} // end for
+			}
 		}
 		
-		//If the stack underflows during the above operations, we can assume the input was improperly formatted
-		catch (StackUnderflowException e) {
-			throw new InvalidNotationFormatExceptionV2();
-		}
+		//The expression must end with an operand or close brace, with every brace closed.
+		//An empty expression is left for the sink to accept or reject
+		if (expectOperand && previous != NotationLexer.END) return result.fail(NotationError.MISSING_OPERAND, lexer.tokenStart());
+		if (depth > 0) return result.fail(NotationError.UNBALANCED, lexer.tokenStart());
 		
-		//Once the entire ArrayList is read through, empty the remaining operators in the Stack
+		//Once every token is read, release the remaining operators
+		sink.endOfInput();
 		while (!operators.isEmpty()) {
-			String val1 = operands.pop();
-			String val2 = operands.pop();
-			double result = operate(val1, val2, operators.pop());
-			operands.push(Double.toString(result));
+			if (!release(operators, sink, result)) return false;
 		}
-		
-		//When everything has been run, we are left with a single item in the operands stack. This is our answer
-		return Double.parseDouble(operands.peek());
+		return true;
 	}
 	
 	/**
-	 * Read a postfix-notated expression and evaluate it numerically
-	 * @param postfixExpr the postfix-notated expression for evaluation
-	 * @return the evaluated expression value
+	 * Report the operator at the top of the parser's Stack to a sink, with its offset, and remove it
+	 * @param operators the parser's operator Stack
+	 * @param sink the PostfixSink to receive the operator
+	 * @param result receives the problem if the sink rejects the operator
+	 * @return true if the sink accepted the operator
+	 */
+	private static boolean release(OperatorStack operators, PostfixSink sink, NotationResult result) {
+		if (!sink.operator(operators.peek(), operators.peekPosition(), result)) return false;
+		operators.pop();
+		return true;
+	}
+	
+	/**
+	 * Read a postfix expression, reporting each operand and operator to a sink as it is read
+	 * @param lexer the lexer positioned at the start of the postfix expression
+	 * @param sink the PostfixSink to receive the expression
 	 * @throws InvalidNotationFormatExceptionV2 if the input is found to be improperly formatted
 	 */
-	public static double evaluatePostfixExpression(String postfixExpr) throws InvalidNotationFormatExceptionV2{
-		
-		//Confirm that the expression consists of only valid characters
-		if(!hasValidPostfixCharacters(postfixExpr)) throw new InvalidNotationFormatExceptionV2(
-				"The expression may only contain numbers/letters, and +, -, *, /, *");
-		
-		//Confirm that the expression does not have any unbalanced braces or parens
-		if(!isBalanced(postfixExpr)) throw new InvalidNotationFormatExceptionV2();
-		
-		//Convert String to a character array
-		char[] chars = postfixExpr.toCharArray();
-		
-		//Create ArrayList for holding String tokens
-		ArrayList<String> strings = new ArrayList<>();
-		
-		//Create empty String for building operands that are found
-		String nextDoubleString = "";
-		
-		//Flag to verify that each decimal only has one decimal point
-		boolean hasDecimal = false;
-		
-		//Look through each character of the char array
-				for (char ch : chars) {
-					//Pull out numbers and decimal points
-					if(Character.isDigit(ch) || ch == '.') {
-						if (ch == '.') {
-							if (hasDecimal == true) throw new InvalidNotationFormatException();
-							else hasDecimal = true;
-						}
-						nextDoubleString += ch;
-					}
-
-					//If an operator is encountered, add the previous number
-					//as a discrete String to the String array
-					else {
-						if(nextDoubleString.length() > 0) {
-							strings.add(nextDoubleString);
-							nextDoubleString = "";
-							hasDecimal = false;
-						}
-						
-						//Add the operator to the String array
-						strings.add(Character.toString(ch)); 
-					}
-				}
-				
-				//At conclusion of for loop, add the last Double in sequence
-				if(nextDoubleString.length() > 0) {
-					strings.add(nextDoubleString);
-					nextDoubleString = "";
-					hasDecimal = false;
-				}
-		
-		//Create Stack for operands and variables for operations
-		MyStack<Double> operandStack = new MyStack<>();
-		double result, thisVal, nextVal;
-		
-		for (String str : strings) {
-			switch (str) {
-
-			//Skip whitespace
-			case " " : break;
-			case "+" : case "-" : case "*" : case "/" : case "^" :
+	static void parsePostfix(NotationLexer lexer, PostfixSink sink) throws InvalidNotationFormatExceptionV2 {
+		NotationResult result = new NotationResult();
+		if (!parsePostfix(lexer, sink, result)) throw result.exception();
+	}
+	
+	/**
+	 * Read a postfix expression, reporting each operand and operator to a sink as it is read, without
+	 * throwing. Postfix tokens are already in the order a sink wants them; braces are not allowed
+	 * @param lexer the lexer positioned at the start of the postfix expression
+	 * @param sink the PostfixSink to receive the expression
+	 * @param result receives the error code, position and reason of the first problem found
+	 * @return true if the whole expression was read, false if a problem was recorded in result
+	 */
+	static boolean parsePostfix(NotationLexer lexer, PostfixSink sink, NotationResult result) {
+		for (int type = lexer.scan(); type != NotationLexer.END; type = lexer.scan()) {
+			switch (type) {
+				case NotationLexer.OPERATOR :
+					if (!sink.operator(lexer.tokenChar(), lexer.tokenStart(), result)) return false;
+					break;
 				
-				try {
-					thisVal = operandStack.pop();
-					nextVal = operandStack.pop();
-				}
+				case NotationLexer.NUMBER :
+				case NotationLexer.VARIABLE :
+					if (!sink.operand(lexer, result)) return false;
+					break;
 				
-				//If the pops cause the stack to underflow, the entered expression was invalid
-				catch (StackUnderflowException e) {
-					throw new InvalidNotationFormatExceptionV2();
-				}
+				case NotationLexer.INVALID :
+					return result.fail(lexer.error(), lexer.errorPosition());
 				
-				switch (str) {
-					case "+" : result = nextVal + thisVal;
-					operandStack.push(result);
-					break;
-					case "-" : result = nextVal - thisVal;
-					operandStack.push(result);
-					break;
-					case "*" : result = nextVal * thisVal;
-					operandStack.push(result);
-					break;
-					case "/" : result = nextVal / thisVal;
-					operandStack.push(result);
-					break;
-					case "^" : result = Math.pow(nextVal, thisVal);
-					operandStack.push(result);
-					break;
-				}
-				break;
-			default:
-				//safe parse because hasValidCharacters() and the above switch statement have already checked for invalid characters
-				operandStack.push(Double.parseDouble(str));
-				break;
+				//Postfix expressions have no use for braces
+				default :
+					return result.fail(POSTFIX_BRACE, NotationError.INVALID_CHARACTER, lexer.tokenStart());
 			}
 		}
-		return operandStack.peek();
+		return true;
 	}
 	
 	/**
@@ -616,6 +868,18 @@ public class NotationV2 {
 	 * @return true if the String has sequential operators. False if the string is properly formatted
 	 */
 	public static boolean hasSequentialOperators (String str) {
+		ValidateEvent event = new ValidateEvent();
+		event.begin();
+		boolean answer = findSequentialOperators(str);
+		event.valid = !answer;
+		event.finish("hasSequentialOperators", str, event.valid ? NotationError.OK : NotationError.SEQUENTIAL_OPERATORS, -1);
+		return answer;
+	}
+	
+	/**
+	 * The check made by hasSequentialOperators, without its flight recorder event
+	 */
+	private static boolean findSequentialOperators(String str) {
 		//Convert String to token array to eliminate whitespace
 		String[] array = str.split(" ");
 		for (int i = 0; i < array.length - 1; i++) {
@@ -631,7 +895,7 @@ public class NotationV2 {
 			
 				//Skip over operand characters
 				if (Character.isDigit(toExamine)) continue;
-				else if (Character.isAlphabetic(str.charAt(i))) continue;
+				else if (Character.isAlphabetic(toExamine)) continue;
 				
 				//Skip over closed braces
 				else if (isClosedBrace(toExamine)) continue;
@@ -660,9 +924,21 @@ public class NotationV2 {
 	 * @return true if the expression is properly balanced, false if otherwise
 	 */
 	public static boolean isBalanced(String str) {
+		ValidateEvent event = new ValidateEvent();
+		event.begin();
+		boolean answer = checkBalance(str);
+		event.valid = answer;
+		event.finish("isBalanced", str, event.valid ? NotationError.OK : NotationError.UNBALANCED, -1);
+		return answer;
+	}
+	
+	/**
+	 * The check made by isBalanced, without its flight recorder event
+	 */
+	private static boolean checkBalance(String str) {
 		
 		//Create a Stack for storing braces/brackets/parens as we find them
-		MyStack<Character> openParenStack = new MyStack<>();
+		CharStack openParenStack = new CharStack();
 		
 		//Convert the String to a char array
 		char[] chars = str.toCharArray();
@@ -683,13 +959,13 @@ public class NotationV2 {
 				//If a closed (right) brace is found, its opposite must be on the top of the Stack.
 				//If that's not the case, then the expression is not balanced.
 				case ')' :
-					if (openParenStack.isEmpty() || !openParenStack.pop().equals('(')) isBalanced = false;
+					if (openParenStack.isEmpty() || openParenStack.pop() != '(') isBalanced = false;
 					break;
 				case '}' :
-					if (openParenStack.isEmpty() || !openParenStack.pop().equals('{')) isBalanced = false;
+					if (openParenStack.isEmpty() || openParenStack.pop() != '{') isBalanced = false;
 					break;
 				case ']' :
-					if (openParenStack.isEmpty() || !openParenStack.pop().equals('[')) isBalanced = false;
+					if (openParenStack.isEmpty() || openParenStack.pop() != '[') isBalanced = false;
 					break;
 					
 				//Non-brace characters are ignored	
@@ -756,41 +1032,50 @@ public class NotationV2 {
 	 * @return the result of the performed function
 	 */
 	public static double operate(String stringA, String stringB, String operator) {
-		double result = 0;
-		
-		double a = Double.parseDouble(stringA);
-		double b = Double.parseDouble(stringB);
-		
-		switch (operator) {
-			case "+" : 
-				result = a + b;
-				break;
-			case "-" :
-				result = b - a;
-				break;
-			case "*" :
-				result = a * b;
-				break;
-			case "/" :
-				result = b / a;
-				break;
-			case "^" :
-				result = Math.pow(b,  a);
-		}
-		
-		return result;
+		return operate(stringA, stringB, operator.charAt(0));
 	}
-}
-
-
-@SuppressWarnings("serial")
-class InvalidNotationFormatExceptionV2 extends RuntimeException {
 	
-	public InvalidNotationFormatExceptionV2() {
-		super("The entered expression contains an invalid notation and cannot be processed.");
+	/**
+	 * Evaluate a two-operand expression
+	 * @param stringA the first operand
+	 * @param stringB the second operand
+	 * @param operator the operator character indicating the function to be performed
+	 * @return the result of the performed function
+	 */
+	public static double operate(String stringA, String stringB, char operator) {
+		return calculate(NumberParser.parse(stringB), NumberParser.parse(stringA), operator);
+	}
+	
+	/**
+	 * Evaluate a two-operand expression on primitive values, with no parsing or formatting
+	 * @param left the left-hand operand
+	 * @param right the right-hand operand
+	 * @param operator the operator character indicating the function to be performed
+	 * @return the result of left operator right
+	 */
+	public static double calculate(double left, double right, char operator) {
+		switch (operator) {
+			case '+' : return left + right;
+			case '-' : return left - right;
+			case '*' : return left * right;
+			case '/' : return left / right;
+			case '^' : return Math.pow(left, right);
+			default : return 0;
+		}
 	}
 	
-	public InvalidNotationFormatExceptionV2(String message) {
-		super(message);
+	/**
+	 * Determine the precedence of an operator. Braces have the lowest precedence so that
+	 * operators are never popped past them
+	 * @param ch the operator or brace character
+	 * @return 3 for ^, 2 for * and /, 1 for + and -, 0 for anything else
+	 */
+	static int precedence(char ch) {
+		switch (ch) {
+			case '^' : return 3;
+			case '*' : case '/' : return 2;
+			case '+' : case '-' : return 1;
+			default : return 0;
+		}
 	}
 }
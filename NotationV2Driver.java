@@ -1,14 +1,17 @@
 import java.util.Scanner;
 
 /**
- * Driver class to test the Notation version 2.0 class
+ * Driver class to test the Notation version 2.0 class.
+ * Run with no arguments for the interactive menu, or with NotationServer's arguments
+ * (e.g. --stdin, --tcp port or --unix path) to serve requests non-interactively
  * @author Mike Meyers
  * @version 2.0
  *
  */
 public class NotationV2Driver {
-	public static void main(String[] args) {
-		prompt();
+	public static void main(String[] args) throws java.io.IOException {
+		if (args.length > 0) NotationServer.main(args);
+		else prompt();
 	}
 	
 	/**
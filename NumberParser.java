@@ -0,0 +1,203 @@
+import java.math.BigInteger;
+
+/**
+ * Converts the decimal numbers that NotationV2 accepts into doubles, straight from a range of characters
+ * and with the same correctly rounded result as Double.parseDouble.
+ *
+ * An operand is digits with at most one decimal point: no sign, no exponent. Its digits are read into a
+ * long significand w and a power of ten q, so the number is exactly w * 10^q, and then:
+ *
+ * 1. If w is at most 2^53 and q is between -22 and 22, both w and 10^q are exact doubles, so a single
+ *    multiplication or division gives the correctly rounded result (Clinger's fast path). Most operands
+ *    end here.
+ * 2. Otherwise w is multiplied by a 128-bit approximation of 5^q and the top bits of the product give the
+ *    double directly (the Eisel-Lemire algorithm). The approximation is at most one unit low, so the true
+ *    product lies within a known, tiny interval; if that interval contains a rounding boundary, this step
+ *    gives up rather than guess.
+ * 3. Numbers with more than 18 significant digits are tried as both w and w + 1, since the true value lies
+ *    between them; if both round to the same double, that is the answer.
+ * 4. Anything else (ambiguous roundings, results that would be subnormal or infinite, and text that is not
+ *    in the operand format at all) goes to Double.parseDouble.
+ *
+ * The table of powers of five is computed exactly with BigInteger when the class is loaded.
+ *
+ * @author Mike Meyers
+ *
+ */
+final class NumberParser {
+
+	private static final int MAX_DIGITS = 18; //Significant digits that always fit in a long with room for w + 1
+	private static final long MAX_EXACT = 1L << 53; //Largest significand that is always an exact double
+
+	//Powers of ten that are exact doubles, for the fast path
+	private static final double[] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	//Powers of five from 5^MIN_POWER to 5^MAX_POWER, each as floor(5^q * 2^SHIFT[q]) normalized to exactly 128 bits
+	private static final int MIN_POWER = -342; //Below this, every significand gives 0 or a subnormal
+	private static final int MAX_POWER = 308; //Above this, every significand gives infinity
+	private static final long[] HIGH = new long[MAX_POWER - MIN_POWER + 1]; //Upper 64 bits
+	private static final long[] LOW = new long[MAX_POWER - MIN_POWER + 1]; //Lower 64 bits
+	private static final int[] SHIFT = new int[MAX_POWER - MIN_POWER + 1]; //Power of two the value was scaled by
+
+	static {
+		BigInteger five = BigInteger.valueOf(5);
+		for (int q = MIN_POWER; q <= MAX_POWER; q++) {
+			BigInteger scaled;
+			int shift;
+			if (q >= 0) {
+				BigInteger power = five.pow(q);
+				shift = 128 - power.bitLength();
+				scaled = (shift >= 0) ? power.shiftLeft(shift) : power.shiftRight(-shift);
+			}
+			else {
+				//5^q = 1 / 5^-q, so divide a power of two large enough to leave 128 bits of quotient
+				BigInteger divisor = five.pow(-q);
+				shift = 127 + divisor.bitLength();
+				scaled = BigInteger.ONE.shiftLeft(shift).divide(divisor);
+			}
+			HIGH[q - MIN_POWER] = scaled.shiftRight(64).longValue();
+			LOW[q - MIN_POWER] = scaled.longValue();
+			SHIFT[q - MIN_POWER] = shift;
+		}
+	}
+
+	/**
+	 * The parser is static only; there is nothing to instantiate
+	 */
+	private NumberParser() {
+	}
+
+	/**
+	 * Convert a number to a double
+	 * @param text the number
+	 * @return the nearest double, exactly as Double.parseDouble would return it
+	 * @throws NumberFormatException if the text is not a number
+	 */
+	static double parse(CharSequence text) {
+		return parse(text, 0, text.length());
+	}
+
+	/**
+	 * Convert a number held in a range of characters to a double
+	 * @param text the characters holding the number
+	 * @param start offset of the first character of the number
+	 * @param end offset one past the last character of the number
+	 * @return the nearest double, exactly as Double.parseDouble would return it
+	 * @throws NumberFormatException if the text is not a number
+	 */
+	static double parse(CharSequence text, int start, int end) {
+		long significand = 0; //The first MAX_DIGITS significant digits
+		int digits = 0; //Significant digits read into significand
+		int power = 0; //Power of ten the significand is scaled by
+		boolean truncated = false; //True if nonzero digits were left out of the significand
+		boolean sawPoint = false;
+		boolean sawDigit = false;
+
+		for (int i = start; i < end; i++) {
+			char ch = text.charAt(i);
+			if (ch == '.') {
+				if (sawPoint) return fallback(text, start, end);
+				sawPoint = true;
+				continue;
+			}
+
+			int digit = ch - '0';
+			if (digit < 0 || digit > 9) return fallback(text, start, end);
+			sawDigit = true;
+
+			if (digits < MAX_DIGITS) {
+				//Leading zeros add nothing to the significand, but after the point they still move it
+				if (significand != 0 || digit != 0) {
+					significand = significand * 10 + digit;
+					digits++;
+				}
+				if (sawPoint) power--;
+			}
+			else {
+				//Digits past the significand only matter for their place, and for whether any are nonzero
+				if (!sawPoint) power++;
+				if (digit != 0) truncated = true;
+			}
+		}
+		if (!sawDigit) return fallback(text, start, end);
+		if (significand == 0) return 0.0;
+
+		//Clinger's fast path: one correctly rounded operation on two exact doubles
+		if (!truncated && significand <= MAX_EXACT && power >= -22 && power <= 22) {
+			return (power < 0) ? significand / POWERS_OF_TEN[-power] : significand * POWERS_OF_TEN[power];
+		}
+
+		double value = eiselLemire(significand, power);
+		if (truncated && !Double.isNaN(value) && value != eiselLemire(significand + 1, power)) value = Double.NaN;
+		return Double.isNaN(value) ? fallback(text, start, end) : value;
+	}
+
+	/**
+	 * Find the double nearest to significand * 10^power with a 64 x 128-bit multiplication
+	 * @param significand a positive significand
+	 * @param power the power of ten
+	 * @return the correctly rounded double, or NaN if it cannot be determined this way
+	 */
+	private static double eiselLemire(long significand, int power) {
+		if (power < MIN_POWER || power > MAX_POWER) return Double.NaN;
+
+		//Normalize the significand so its top bit is set
+		int leadingZeros = Long.numberOfLeadingZeros(significand);
+		long w = significand << leadingZeros;
+
+		//Top 128 bits of the 192-bit product w * 5^power, as (high, middle)
+		int index = power - MIN_POWER;
+		long high = unsignedMultiplyHigh(w, HIGH[index]);
+		long middle = w * HIGH[index];
+		long lowHigh = unsignedMultiplyHigh(w, LOW[index]);
+		long sum = middle + lowHigh;
+		if (Long.compareUnsigned(sum, middle) < 0) high++;
+		middle = sum;
+
+		//The discarded low word and the table's truncation are each less than w, so the true product is
+		//at most two units of the middle word above (high, middle). The product has 191 or 192 bits;
+		//keep 53 bits of mantissa and look at the bits below them to round
+		int top = (int) (high >>> 63); //1 if the product has 192 bits
+		int belowBits = 10 + top; //Bits of high below the mantissa
+		long mantissa = high >>> belowBits;
+		long roundBit = (high >>> (belowBits - 1)) & 1;
+		long rest = high & ((1L << (belowBits - 1)) - 1); //Bits of high below the rounding bit
+
+		if (roundBit == 0) {
+			//Just below halfway: the two units of error could carry it to exactly or past halfway
+			if (rest == (1L << (belowBits - 1)) - 1 && Long.compareUnsigned(middle, -2L) >= 0) return Double.NaN;
+		}
+		else {
+			//Exactly halfway as computed: the true value may be a tie, which needs round-half-even
+			if (rest == 0 && middle == 0) return Double.NaN;
+			mantissa++;
+		}
+		int exponent = 128 + belowBits + power - SHIFT[index] - leadingZeros;
+		if (mantissa == (1L << 53)) {
+			mantissa >>>= 1;
+			exponent++;
+		}
+
+		//The result is mantissa * 2^exponent, with a 53-bit mantissa; leave subnormals and overflow to the JDK
+		int biased = exponent + 52 + 1023;
+		if (biased < 1 || biased > 2046) return Double.NaN;
+		return Double.longBitsToDouble(((long) biased << 52) | (mantissa & ((1L << 52) - 1)));
+	}
+
+	/**
+	 * Compute the upper 64 bits of the unsigned 128-bit product of two longs
+	 */
+	private static long unsignedMultiplyHigh(long x, long y) {
+		return Math.multiplyHigh(x, y) + ((x >> 63) & y) + ((y >> 63) & x);
+	}
+
+	/**
+	 * Convert a number the fast paths could not, using the JDK
+	 */
+	private static double fallback(CharSequence text, int start, int end) {
+		return Double.parseDouble(text.subSequence(start, end).toString());
+	}
+}
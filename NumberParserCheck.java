@@ -0,0 +1,124 @@
+import java.math.BigDecimal;
+import java.util.Random;
+
+/**
+ * Self-check that NumberParser returns exactly what Double.parseDouble returns.
+ *
+ * Every string of up to six digits and decimal points is checked exhaustively, followed by random
+ * inputs that exercise each path of the parser: the shortest and the exact decimal expansions of random
+ * doubles, random digit strings of up to 30 digits (past the 18 the significand holds), exact halfway
+ * points between adjacent doubles, and a list of known hard cases. Results are compared bit for bit
+ * with doubleToRawLongBits.
+ *
+ * Prints the first mismatches and exits with status 1 if there are any.
+ *
+ * Usage: java NumberParserCheck [--random n] [--seed n]
+ *
+ * @author Mike Meyers
+ *
+ */
+public class NumberParserCheck {
+
+	private static final int MAX_EXHAUSTIVE_LENGTH = 6; //Longest string checked exhaustively
+	private static final String ALPHABET = "0123456789."; //Characters of the exhaustive strings
+	private static final int MAX_REPORTED = 20; //Mismatches printed before the rest are only counted
+
+	//Inputs that sit on or next to rounding boundaries, or at the edges of the parser's table
+	private static final String[] HARD_CASES = {
+		"9007199254740993", "9007199254740992.5", "9007199254740995", "72057594037927933",
+		"7.2057594037927933", "7317770170789331", "100000000000000000000000", "0.3", "0.1",
+		"1.7976931348623157", "123456789012345678901234567890", "00000000000000000000000001",
+		"1.", ".5", "5.000000000000000000000000001", "2.2250738585072014", "4.9406564584124654",
+		"179769313486231580793728971405303415079934132710037826936173778980444968292764750946649017977587207096330286416692887910946555547851940402630657488671505820681908902000708383676273854845817711531764475730270069855571366959622842914819860834936475292719074168444365510704342711559699508093042880177904174497792",
+		"0.000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000049406564584124654",
+	};
+
+	private long checked = 0; //Inputs compared
+	private long mismatches = 0; //Inputs whose results differed
+
+	public static void main(String[] args) {
+		int random = 1_000_000;
+		long seed = 1;
+		for (int i = 0; i < args.length; i++) {
+			switch (args[i]) {
+				case "--random" : random = Integer.parseInt(args[++i]); break;
+				case "--seed" : seed = Long.parseLong(args[++i]); break;
+				default :
+					System.err.println("Usage: java NumberParserCheck [--random n] [--seed n]");
+					System.exit(1);
+			}
+		}
+
+		NumberParserCheck check = new NumberParserCheck();
+		check.exhaustive();
+		check.random(random, new Random(seed));
+		for (String hard : HARD_CASES) check.compare(hard);
+
+		System.out.println("NumberParserCheck: " + check.checked + " inputs, " + check.mismatches + " mismatches");
+		if (check.mismatches > 0) System.exit(1);
+	}
+
+	/**
+	 * Check every string of digits and at most one decimal point, up to MAX_EXHAUSTIVE_LENGTH characters
+	 */
+	private void exhaustive() {
+		for (int length = 1; length <= MAX_EXHAUSTIVE_LENGTH; length++) {
+			int[] digits = new int[length]; //The string as indices into ALPHABET, counted like an odometer
+			char[] text = new char[length];
+			while (true) {
+				int points = 0;
+				for (int i = 0; i < length; i++) {
+					text[i] = ALPHABET.charAt(digits[i]);
+					if (text[i] == '.') points++;
+				}
+				if (points <= 1 && !(length == 1 && points == 1)) compare(new String(text));
+
+				int i = length - 1;
+				while (i >= 0 && ++digits[i] == ALPHABET.length()) digits[i--] = 0;
+				if (i < 0) break;
+			}
+		}
+	}
+
+	/**
+	 * Check random inputs aimed at each path of the parser
+	 * @param rounds the number of rounds, each checking four inputs
+	 * @param random the source of inputs
+	 */
+	private void random(int rounds, Random random) {
+		for (int round = 0; round < rounds; round++) {
+			//A random double in the range operands reach, written exactly and written shortest
+			double value = Math.scalb(1 + random.nextDouble(), random.nextInt(400) - 200);
+			compare(new BigDecimal(value).toPlainString());
+			compare(new BigDecimal(Double.toString(value)).toPlainString());
+
+			//Random digits, often more than the significand holds, with the point anywhere or nowhere
+			int length = 1 + random.nextInt(30);
+			StringBuilder digits = new StringBuilder(length + 1);
+			for (int i = 0; i < length; i++) digits.append((char) ('0' + random.nextInt(10)));
+			if (random.nextBoolean()) digits.insert(random.nextInt(length + 1), '.');
+			compare(digits.toString());
+
+			//Exactly halfway between two adjacent doubles, where round-half-even decides
+			double low = Math.scalb(1 + random.nextDouble(), random.nextInt(120) - 60);
+			BigDecimal halfway = new BigDecimal(low).add(new BigDecimal(Math.nextUp(low))).divide(BigDecimal.valueOf(2));
+			compare(halfway.toPlainString());
+		}
+	}
+
+	/**
+	 * Compare NumberParser with Double.parseDouble for one input
+	 * @param text the number
+	 */
+	private void compare(String text) {
+		checked++;
+		double expected = Double.parseDouble(text);
+		double actual = NumberParser.parse(text);
+		if (Double.doubleToRawLongBits(expected) != Double.doubleToRawLongBits(actual)) {
+			if (mismatches < MAX_REPORTED) {
+				System.out.println("MISMATCH " + text + ": parsed " + actual + ", expected " + expected);
+			}
+			mismatches++;
+		}
+	}
+}
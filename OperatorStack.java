@@ -0,0 +1,76 @@
+import java.util.Arrays;
+
+/**
+ * The operator Stack of the infix parser: a Stack of operator and brace characters, each kept with the
+ * offset of its token in the source, so an operator can still be reported at its own position when it
+ * is released long after it was read. Backed by growable arrays; nothing is boxed and no objects are
+ * created per push.
+ *
+ * @author Mike Meyers
+ *
+ */
+final class OperatorStack {
+
+	private char[] operators = new char[16]; //The operators and braces in the Stack, bottom first
+	private int[] positions = new int[16]; //Offset of each one's token in the source
+	private int size = 0; //The number of entries in the Stack
+
+	/**
+	 * Determine if the Stack is empty
+	 * @return true if the Stack holds no entries, false otherwise
+	 */
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Add an operator or brace to the top of the Stack, growing the Stack if it is out of room
+	 * @param operator the operator or brace character
+	 * @param position offset of its token in the source
+	 */
+	void push(char operator, int position) {
+		if (size == operators.length) {
+			operators = Arrays.copyOf(operators, size * 2);
+			positions = Arrays.copyOf(positions, size * 2);
+		}
+		operators[size] = operator;
+		positions[size++] = position;
+	}
+
+	/**
+	 * Retrieve the character at the top of the Stack without removing it
+	 * @return the operator or brace at the top of the Stack
+	 * @throws StackUnderflowException if the Stack is empty
+	 */
+	char peek() throws StackUnderflowException {
+		if (size == 0) throw new StackUnderflowException("The stack is empty. The operation may not be completed");
+		return operators[size - 1];
+	}
+
+	/**
+	 * Retrieve the offset of the entry at the top of the Stack without removing it
+	 * @return the offset in the source of the operator or brace at the top of the Stack
+	 * @throws StackUnderflowException if the Stack is empty
+	 */
+	int peekPosition() throws StackUnderflowException {
+		if (size == 0) throw new StackUnderflowException("The stack is empty. The operation may not be completed");
+		return positions[size - 1];
+	}
+
+	/**
+	 * Remove the entry at the top of the Stack
+	 * @return the operator or brace that was at the top of the Stack
+	 * @throws StackUnderflowException if the Stack is empty
+	 */
+	char pop() throws StackUnderflowException {
+		if (size == 0) throw new StackUnderflowException("The stack is empty. The operation may not be completed");
+		return operators[--size];
+	}
+
+	/**
+	 * Remove every entry from the Stack, keeping its capacity for reuse
+	 */
+	void clear() {
+		size = 0;
+	}
+}
@@ -0,0 +1,137 @@
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Self-check that ParallelBatchEvaluator returns exactly what NotationV2.evaluateBatch returns.
+ *
+ * A batch of distinct valid expressions mixed with every kind of invalid one is evaluated sequentially,
+ * then in parallel on ForkJoinPools of several sizes and leaf sizes and on an ExecutorService. Each
+ * parallel run must return the same failure count, and at every index the same result bit for bit and
+ * the same error code, so an expression evaluated twice, skipped or written to the wrong index is caught.
+ * Batches shorter than a leaf and batches that do not divide evenly are checked too.
+ *
+ * Prints the first mismatches and exits with status 1 if there are any.
+ *
+ * Usage: java ParallelBatchCheck [--size n] [--seed n]
+ *
+ * @author Mike Meyers
+ *
+ */
+public class ParallelBatchCheck {
+
+	//Invalid expressions, one for each kind of error, plus valid ones whose results are not finite
+	private static final String[] SPECIAL_CASES = {
+		"1 + * 2", "(1 + 2", "1 + 2)", "1 2", "a + 1", "", "   ", "1 + 2 +", "1.2.3 + 4", "1 # 2", "()",
+		"1 / 0", "0 / 0", "-1 ^ 0.5",
+	};
+	private static final int MAX_REPORTED = 20; //Mismatches printed before the rest are only counted
+
+	private long checked = 0; //Results compared
+	private long mismatches = 0; //Results that differed
+
+	public static void main(String[] args) {
+		int size = 100_000;
+		long seed = 1;
+		for (int i = 0; i < args.length; i++) {
+			switch (args[i]) {
+				case "--size" : size = Integer.parseInt(args[++i]); break;
+				case "--seed" : seed = Long.parseLong(args[++i]); break;
+				default :
+					System.err.println("Usage: java ParallelBatchCheck [--size n] [--seed n]");
+					System.exit(1);
+			}
+		}
+
+		CharSequence[] batch = batch(size, new Random(seed));
+		ParallelBatchCheck check = new ParallelBatchCheck();
+		for (int length : new int[] {0, 1, 7, 1023, 1025, size}) {
+			CharSequence[] part = Arrays.copyOf(batch, length);
+			for (int threads : new int[] {1, 2, 4}) {
+				ForkJoinPool pool = new ForkJoinPool(threads);
+				check.compare("ForkJoinPool(" + threads + ")", part, new ParallelBatchEvaluator(pool));
+				check.compare("ForkJoinPool(" + threads + "), leaf 1", part, new ParallelBatchEvaluator(pool, 1));
+				check.compare("ForkJoinPool(" + threads + "), leaf 7", part, new ParallelBatchEvaluator(pool, 7));
+				pool.shutdown();
+
+				ExecutorService executor = Executors.newFixedThreadPool(threads);
+				check.compare("ExecutorService(" + threads + ")", part, new ParallelBatchEvaluator(executor, threads));
+				executor.shutdown();
+			}
+			check.compare("common pool", part, new ParallelBatchEvaluator());
+		}
+
+		System.out.println("ParallelBatchCheck: " + check.checked + " results, " + check.mismatches + " mismatches");
+		if (check.mismatches > 0) System.exit(1);
+	}
+
+	/**
+	 * Build a batch of random valid expressions, with a special case at every 50th index
+	 * @param size the number of expressions
+	 * @param random the source of operand values
+	 * @return the batch
+	 */
+	private static CharSequence[] batch(int size, Random random) {
+		CharSequence[] batch = new CharSequence[size];
+		for (int i = 0; i < size; i++) {
+			if (i % 50 == 49) batch[i] = SPECIAL_CASES[(i / 50) % SPECIAL_CASES.length];
+			else batch[i] = ExpressionSamples.infixOfSize(1 + random.nextInt(40), random);
+		}
+		return batch;
+	}
+
+	/**
+	 * Evaluate a batch sequentially and with one parallel evaluator, with and without an error array,
+	 * and compare every result
+	 * @param name the evaluator's description, for reports
+	 * @param batch the expressions
+	 * @param evaluator the parallel evaluator
+	 */
+	private void compare(String name, CharSequence[] batch, ParallelBatchEvaluator evaluator) {
+		double[] expected = new double[batch.length];
+		int[] expectedErrors = new int[batch.length];
+		int expectedFailures = NotationV2.evaluateBatch(batch, expected, expectedErrors);
+
+		//Results start out holding a value no expression produces, so an index never written shows up
+		double[] actual = new double[batch.length];
+		int[] actualErrors = new int[batch.length];
+		Arrays.fill(actual, -12345.5);
+		Arrays.fill(actualErrors, -1);
+		int actualFailures = evaluator.evaluate(batch, actual, actualErrors);
+		report(name, batch, expectedFailures, actualFailures, expected, actual, expectedErrors, actualErrors);
+
+		Arrays.fill(actual, -12345.5);
+		actualFailures = evaluator.evaluate(batch, actual, null);
+		report(name + ", no error array", batch, expectedFailures, actualFailures, expected, actual, null, null);
+	}
+
+	/**
+	 * Count and print the differences between a sequential and a parallel run
+	 */
+	private void report(String name, CharSequence[] batch, int expectedFailures, int actualFailures,
+			double[] expected, double[] actual, int[] expectedErrors, int[] actualErrors) {
+		if (expectedFailures != actualFailures) {
+			mismatch(name + " on " + batch.length + " expressions: " + actualFailures + " failures, expected " + expectedFailures);
+		}
+		for (int i = 0; i < batch.length; i++) {
+			checked++;
+			if (Double.doubleToRawLongBits(expected[i]) != Double.doubleToRawLongBits(actual[i])) {
+				mismatch(name + " at " + i + " \"" + batch[i] + "\": result " + actual[i] + ", expected " + expected[i]);
+			}
+			else if (expectedErrors != null && expectedErrors[i] != actualErrors[i]) {
+				mismatch(name + " at " + i + " \"" + batch[i] + "\": error " + actualErrors[i] + ", expected " + expectedErrors[i]);
+			}
+		}
+	}
+
+	/**
+	 * Count a mismatch, printing it if few have been printed so far
+	 * @param description what differed
+	 */
+	private void mismatch(String description) {
+		if (mismatches < MAX_REPORTED) System.out.println("MISMATCH " + description);
+		mismatches++;
+	}
+}
@@ -0,0 +1,138 @@
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Evaluate large batches of independent infix expressions across several cores.
+ *
+ * The batch is split into ranges that run on a ForkJoinPool (the common pool unless one is given) or on
+ * any ExecutorService. Each worker thread evaluates with its own ExpressionEvaluator, so lexers and
+ * Stacks are never shared, and every result is written at its own index so the output is in input order.
+ * Results and error codes are identical to those of NotationV2.evaluateBatch.
+ *
+ * @author Mike Meyers
+ *
+ */
+public class ParallelBatchEvaluator {
+
+	private static final int DEFAULT_LEAF_SIZE = 1024; //Expressions evaluated by one task without splitting further
+
+	private final ForkJoinPool pool; //The pool to split work across, or null when using an executor
+	private final ExecutorService executor; //The executor to submit ranges to, or null when using a pool
+	private final int parallelism; //Number of ranges to divide a batch into for an executor
+	private final int leafSize; //Expressions evaluated by one task without splitting further
+
+	/**
+	 * Create an evaluator that runs on the common ForkJoinPool
+	 */
+	public ParallelBatchEvaluator() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Create an evaluator that runs on a given ForkJoinPool
+	 * @param pool the pool to run on
+	 */
+	public ParallelBatchEvaluator(ForkJoinPool pool) {
+		this(pool, DEFAULT_LEAF_SIZE);
+	}
+
+	/**
+	 * Create an evaluator that runs on a given ForkJoinPool, splitting work down to a given range size
+	 * @param pool the pool to run on
+	 * @param leafSize the number of expressions one task evaluates without splitting further
+	 */
+	public ParallelBatchEvaluator(ForkJoinPool pool, int leafSize) {
+		this.pool = pool;
+		this.executor = null;
+		this.parallelism = pool.getParallelism();
+		this.leafSize = Math.max(1, leafSize);
+	}
+
+	/**
+	 * Create an evaluator that submits work to an ExecutorService
+	 * @param executor the executor to submit ranges to
+	 * @param parallelism the number of threads the executor will run at once
+	 */
+	public ParallelBatchEvaluator(ExecutorService executor, int parallelism) {
+		this.pool = null;
+		this.executor = executor;
+		this.parallelism = Math.max(1, parallelism);
+		this.leafSize = DEFAULT_LEAF_SIZE;
+	}
+
+	/**
+	 * Evaluate a batch of infix expressions in parallel
+	 * @param expressions the infix-notated expressions for evaluation
+	 * @param results receives the value of each expression at its own index, or NaN if it failed
+	 * @param errors receives the NotationError code of each expression at its own index; may be null
+	 * @return the number of expressions that failed
+	 */
+	public int evaluate(CharSequence[] expressions, double[] results, int[] errors) {
+		if (pool != null) return pool.invoke(new RangeTask(expressions, 0, expressions.length, results, errors));
+
+		//Divide the batch into a few ranges per thread so uneven ranges even out
+		int ranges = Math.min(expressions.length, parallelism * 4);
+		ArrayList<Future<Integer>> futures = new ArrayList<>(ranges);
+		for (int i = 0; i < ranges; i++) {
+			int from = (int) ((long) expressions.length * i / ranges);
+			int to = (int) ((long) expressions.length * (i + 1) / ranges);
+			futures.add(executor.submit(() -> NotationV2.evaluator().evaluateBatch(expressions, from, to, results, errors)));
+		}
+
+		//Wait for every range and total their failures
+		int failures = 0;
+		try {
+			for (Future<Integer> future : futures) failures += future.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for the batch", e);
+		}
+		catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		}
+		return failures;
+	}
+
+	/**
+	 * A fork-join task that evaluates a range of the batch, splitting it in half until it is small enough
+	 * @author Mike Meyers
+	 *
+	 */
+	@SuppressWarnings("serial")
+	private class RangeTask extends RecursiveTask<Integer> {
+		private final CharSequence[] expressions;
+		private final int from, to;
+		private final double[] results;
+		private final int[] errors;
+
+		RangeTask(CharSequence[] expressions, int from, int to, double[] results, int[] errors) {
+			this.expressions = expressions;
+			this.from = from;
+			this.to = to;
+			this.results = results;
+			this.errors = errors;
+		}
+
+		/**
+		 * Evaluate the range directly if it is small, otherwise split it and evaluate both halves
+		 * @return the number of expressions in the range that failed
+		 */
+		@Override
+		protected Integer compute() {
+			if (to - from <= leafSize) {
+				return NotationV2.evaluator().evaluateBatch(expressions, from, to, results, errors);
+			}
+			int middle = (from + to) >>> 1;
+			RangeTask upper = new RangeTask(expressions, middle, to, results, errors);
+			upper.fork();
+			int failures = new RangeTask(expressions, from, middle, results, errors).compute();
+			return failures + upper.join();
+		}
+	}
+}
@@ -0,0 +1,16 @@
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * A slow parse: converting or compiling an expression, including the validation done in the same pass
+ * @author Mike Meyers
+ *
+ */
+@Name("notation.Parse")
+@Label("Notation Parse")
+@Description("Tokenizing, validating and parsing an expression with the shunting-yard pass or into a tree")
+@Threshold("1 ms")
+class ParseEvent extends NotationEvent {
+}
@@ -0,0 +1,41 @@
+/**
+ * Interface for anything that consumes an expression in postfix order. The shared
+ * infix parser in NotationV2 reports each operand and operator to a sink in the order
+ * they would appear in postfix notation, so converting, compiling and evaluating
+ * an infix expression all run on the same single pass.
+ *
+ * A sink that finds a problem records it in the result it is given and returns false, rather than
+ * throwing, so evaluating invalid input without exceptions costs no more than evaluating valid input.
+ *
+ * @author Mike Meyers
+ *
+ */
+public interface PostfixSink {
+
+	/**
+	 * Receive an operand. The lexer is positioned on the operand's NUMBER or VARIABLE token,
+	 * so the sink may read its text or value directly from the source
+	 * @param lexer the lexer positioned on the operand token
+	 * @param result receives the error code and position if the sink rejects the operand
+	 * @return true if the operand was accepted, false if the problem was recorded in result
+	 */
+	public boolean operand(NotationLexer lexer, NotationResult result);
+
+	/**
+	 * Receive an operator. Its operands are the two most recent results reported to this sink
+	 * @param operator the operator character: one of + - * / ^
+	 * @param position offset of the operator's token in the source, for reporting an operator
+	 * that lacks an operand
+	 * @param result receives the error code and position if the sink rejects the operator
+	 * @return true if the operator was accepted, false if the problem was recorded in result
+	 */
+	public boolean operator(char operator, int position, NotationResult result);
+	
+	/**
+	 * Called once every token has been read, just before the operators still waiting
+	 * on the parser's Stack are released. Most sinks have no use for it
+	 */
+	public default void endOfInput() {
+	}
+
+}
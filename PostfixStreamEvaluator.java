@@ -0,0 +1,221 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Evaluate postfix expressions that are too large to hold in memory as a String.
+ *
+ * The expression is read as ASCII bytes, one chunk at a time, from a channel or a memory-mapped file.
+ * Tokens are recognized incrementally, so a number may be split across any number of chunks, and
+ * only the operand Stack and the digits of the number currently being read are kept in memory.
+ * Memory use is therefore bounded by the depth of the expression, not its size.
+ *
+ * Problems are reported as the String evaluators report them, with a NotationError code and the offset of
+ * the offending token, counted in bytes from the start of the expression.
+ *
+ * An evaluator is not thread-safe, but may be reused for any number of expressions.
+ *
+ * @author Mike Meyers
+ *
+ */
+public class PostfixStreamEvaluator {
+
+	private static final int DEFAULT_CHUNK_SIZE = 64 * 1024; //Bytes read from a channel at a time
+	private static final long MAP_WINDOW = 64L * 1024 * 1024; //Bytes of a file mapped at a time
+
+	private final int chunkSize; //Size of the buffer used to read channels
+	private final DoubleStack operands = new DoubleStack(); //Operands and intermediate results
+	private char[] number = new char[32]; //Characters of the number currently being read
+	private int numberLength = 0; //Number of characters in the current number, 0 when between tokens
+	private final CharSequence numberText = new NumberText(); //The current number, as NumberParser reads it
+	private boolean numberHasDecimal = false; //True if the current number already has a decimal point
+	private long position = 0; //Offset of the next byte in the whole expression
+	private long secondOperand = -1; //Offset of the number that starts the second stack entry, while there is one
+
+	/**
+	 * Create an evaluator that reads channels in 64KB chunks
+	 */
+	public PostfixStreamEvaluator() {
+		this(DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Create an evaluator that reads channels in chunks of a given size
+	 * @param chunkSize the number of bytes read from a channel at a time
+	 */
+	public PostfixStreamEvaluator(int chunkSize) {
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Evaluate a postfix expression read from a channel until it is exhausted
+	 * @param channel the channel supplying the expression as ASCII text
+	 * @return the evaluated expression value
+	 * @throws IOException if the channel cannot be read
+	 * @throws InvalidNotationFormatExceptionV2 if the expression is found to be improperly formatted
+	 */
+	public double evaluate(ReadableByteChannel channel) throws IOException, InvalidNotationFormatExceptionV2 {
+		reset();
+		ByteBuffer buffer = ByteBuffer.allocate(chunkSize);
+		while (channel.read(buffer) >= 0) {
+			buffer.flip();
+			feed(buffer);
+			buffer.clear();
+		}
+		return finish();
+	}
+
+	/**
+	 * Evaluate a postfix expression stored in a file. The file is memory-mapped one window at a time,
+	 * so it is never copied onto the heap
+	 * @param file the file holding the expression as ASCII text
+	 * @return the evaluated expression value
+	 * @throws IOException if the file cannot be read
+	 * @throws InvalidNotationFormatExceptionV2 if the expression is found to be improperly formatted
+	 */
+	public double evaluate(Path file) throws IOException, InvalidNotationFormatExceptionV2 {
+		reset();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			for (long offset = 0; offset < size; offset += MAP_WINDOW) {
+				MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(MAP_WINDOW, size - offset));
+				feed(window);
+			}
+		}
+		return finish();
+	}
+
+	/**
+	 * Discard any partially evaluated expression so that a new one may be fed in
+	 */
+	public void reset() {
+		operands.clear();
+		numberLength = 0;
+		numberHasDecimal = false;
+		position = 0;
+	}
+
+	/**
+	 * Feed the next chunk of the expression. Every remaining byte of the buffer is consumed
+	 * @param buffer the next bytes of the expression
+	 * @throws InvalidNotationFormatExceptionV2 if the expression is found to be improperly formatted
+	 */
+	public void feed(ByteBuffer buffer) throws InvalidNotationFormatExceptionV2 {
+		int limit = buffer.limit();
+		for (int i = buffer.position(); i < limit; i++) {
+			consume((char) (buffer.get(i) & 0xFF));
+			position++;
+		}
+		buffer.position(limit);
+	}
+
+	/**
+	 * Finish the expression once every chunk has been fed
+	 * @return the evaluated expression value
+	 * @throws InvalidNotationFormatExceptionV2 if the expression did not reduce to exactly one value; a number
+	 * left over is reported at the start of the second stack entry, the first that nothing combined
+	 */
+	public double finish() throws InvalidNotationFormatExceptionV2 {
+		endNumber();
+		int size = operands.size();
+		if (size != 1) throw new InvalidNotationFormatExceptionV2(NotationError.unreduced(size), size == 0 ? -1 : offset(secondOperand));
+		return operands.pop();
+	}
+
+	/**
+	 * Advance the tokenizer by one character
+	 * @param ch the next character of the expression
+	 * @throws InvalidNotationFormatExceptionV2 if the character cannot appear at this point
+	 */
+	private void consume(char ch) throws InvalidNotationFormatExceptionV2 {
+		//Digits and decimal points extend the current number, however many chunks it spans
+		if (ch >= '0' && ch <= '9' || ch == '.') {
+			if (ch == '.') {
+				if (numberHasDecimal) throw error(NotationError.INVALID_NUMBER, position);
+				numberHasDecimal = true;
+			}
+			if (numberLength == number.length) number = Arrays.copyOf(number, numberLength * 2);
+			number[numberLength++] = ch;
+			return;
+		}
+
+		//Anything else ends the current number
+		endNumber();
+
+		if (Character.isWhitespace(ch)) return;
+
+		if (NotationV2.isOperator(ch)) {
+			if (operands.size() < 2) throw error(NotationError.MISSING_OPERAND, position);
+			double right = operands.pop();
+			double left = operands.pop();
+			operands.push(NotationV2.calculate(left, right, ch));
+		}
+		else if (Character.isAlphabetic(ch)) throw error(NotationError.UNBOUND_VARIABLE, position);
+		else if (NotationV2.isBrace(ch) || NotationV2.isClosedBrace(ch)) throw new InvalidNotationFormatExceptionV2(
+				NotationV2.POSTFIX_BRACE, NotationError.INVALID_CHARACTER, offset(position));
+		else throw error(NotationError.INVALID_CHARACTER, position);
+	}
+
+	/**
+	 * Push the number that has just been read, if there is one
+	 * @throws InvalidNotationFormatExceptionV2 if the number is only a decimal point
+	 */
+	private void endNumber() throws InvalidNotationFormatExceptionV2 {
+		if (numberLength == 0) return;
+		if (numberLength == 1 && numberHasDecimal) throw error(NotationError.INVALID_NUMBER, position - 1);
+		operands.push(NumberParser.parse(numberText, 0, numberLength));
+		if (operands.size() == 2) secondOperand = position - numberLength;
+		numberLength = 0;
+		numberHasDecimal = false;
+	}
+
+	/**
+	 * Create the exception for a problem found in the expression, as the String evaluators report it
+	 * @param error the NotationError code
+	 * @param at offset of the offending token in the whole expression
+	 * @return the exception to throw
+	 */
+	private static InvalidNotationFormatExceptionV2 error(int error, long at) {
+		return new InvalidNotationFormatExceptionV2(error, offset(at));
+	}
+
+	/**
+	 * Convert an offset in the whole expression to an exception position. Offsets past the range of an
+	 * int, which only a stream can reach, are reported as unknown
+	 */
+	private static int offset(long at) {
+		return (at <= Integer.MAX_VALUE) ? (int) at : -1;
+	}
+
+	/**
+	 * A view of the number currently being read, reused for every number so that parsing one allocates
+	 * nothing. Only the rare numbers NumberParser hands to Double.parseDouble are copied into a String
+	 */
+	private final class NumberText implements CharSequence {
+
+		@Override
+		public int length() {
+			return numberLength;
+		}
+
+		@Override
+		public char charAt(int index) {
+			return number[index];
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			return new String(number, start, end - start);
+		}
+
+		@Override
+		public String toString() {
+			return new String(number, 0, numberLength);
+		}
+	}
+}
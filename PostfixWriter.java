@@ -0,0 +1,96 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * A PostfixSink that writes the postfix form of an expression as text.
+ * 
+ * Each token is copied straight from the source into the output, so the cost of writing is linear
+ * in the length of the expression. The format matches what convertInfixToPostfix has always
+ * produced: every operand and operator is followed by a space, except the operators released
+ * at the very end of the expression, which are written back to back.
+ * 
+ * @author Mike Meyers
+ *
+ */
+class PostfixWriter implements PostfixSink {
+	
+	private final Appendable out; //Where the postfix text is written
+	private final StringBuilder builder; //The same destination when it is a StringBuilder, which cannot fail
+	private boolean draining = false; //True once the trailing operators are being released
+	private int depth = 0; //Operands written and not yet combined
+	private int peakDepth = 0; //Deepest the operand stack would grow evaluating the output
+	
+	/**
+	 * Create a writer for a destination
+	 * @param out the Appendable to write the postfix text to
+	 */
+	PostfixWriter(Appendable out) {
+		this.out = out;
+		this.builder = (out instanceof StringBuilder) ? (StringBuilder) out : null;
+	}
+	
+	/**
+	 * Write an operand followed by a space
+	 * @param lexer the lexer positioned on the operand token
+	 * @param result unused; every operand is accepted
+	 * @return true
+	 * @throws UncheckedIOException if the destination fails
+	 */
+	@Override
+	public boolean operand(NotationLexer lexer, NotationResult result) {
+		if (++depth > peakDepth) peakDepth = depth;
+		if (builder != null) {
+			lexer.appendToken(builder).append(' ');
+			return true;
+		}
+		try {
+			out.append(lexer.source(), lexer.tokenStart(), lexer.tokenEnd()).append(' ');
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return true;
+	}
+	
+	/**
+	 * Write an operator, followed by a space unless it is one of the trailing operators
+	 * @param operator the operator character
+	 * @param position offset of the operator in the source
+	 * @param result unused; every operator is accepted, since the parser has already checked it
+	 * @return true
+	 * @throws UncheckedIOException if the destination fails
+	 */
+	@Override
+	public boolean operator(char operator, int position, NotationResult result) {
+		depth--;
+		if (builder != null) {
+			builder.append(operator);
+			if (!draining) builder.append(' ');
+			return true;
+		}
+		try {
+			out.append(operator);
+			if (!draining) out.append(' ');
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return true;
+	}
+	
+	/**
+	 * Determine how deep the operand stack would grow evaluating what has been written
+	 * @return the peak depth of the operand stack
+	 */
+	int peakDepth() {
+		return peakDepth;
+	}
+	
+	/**
+	 * Note that the remaining operators are the trailing ones
+	 */
+	@Override
+	public void endOfInput() {
+		draining = true;
+	}
+}
@@ -0,0 +1,105 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A PostfixSink that assembles the program of a CompiledExpression, checking as it goes
+ * that every operator has two operands to work on and assigning each new variable a slot
+ * @author Mike Meyers
+ *
+ */
+class ProgramBuilder implements PostfixSink {
+
+	private int[] code = new int[16];
+	private int codeLength = 0;
+	private double[] constants = new double[8];
+	private int constantCount = 0;
+	private int depth = 0; //Current depth of the operand stack
+	private int maxDepth = 0; //Deepest the operand stack has grown
+	private int secondOperand = -1; //Offset of the operand that starts the second stack entry, while there is one
+	private ArrayList<String> variables = new ArrayList<>(); //Variable names, indexed by slot
+	private int[] variablePositions = new int[4]; //Offset of each variable's first appearance, indexed by slot
+
+	/**
+	 * Add a PUSH of a number's value, or a LOAD of a variable's slot, to the program
+	 * @param lexer the lexer positioned on the operand token
+	 * @param result unused; every operand is accepted
+	 * @return true
+	 */
+	@Override
+	public boolean operand(NotationLexer lexer, NotationResult result) {
+		if (lexer.tokenType() == NotationLexer.VARIABLE) {
+			//Variables keep the slot they were given on first appearance
+			String name = lexer.tokenText();
+			int slot = variables.indexOf(name);
+			if (slot < 0) {
+				slot = variables.size();
+				variables.add(name);
+				if (slot == variablePositions.length) variablePositions = Arrays.copyOf(variablePositions, slot * 2);
+				variablePositions[slot] = lexer.tokenStart();
+			}
+			emit(CompiledExpression.LOAD);
+			emit(slot);
+		}
+		else {
+			if (constantCount == constants.length) constants = Arrays.copyOf(constants, constantCount * 2);
+			constants[constantCount] = lexer.numberValue();
+			emit(CompiledExpression.PUSH);
+			emit(constantCount++);
+		}
+
+		if (++depth > maxDepth) maxDepth = depth;
+		if (depth == 2) secondOperand = lexer.tokenStart();
+		return true;
+	}
+
+	/**
+	 * Add an operator to the program
+	 * @param operator the operator character
+	 * @param position offset of the operator in the source
+	 * @param result receives MISSING_OPERAND if there are not two operands for the operator
+	 * @return true if the operator was added
+	 */
+	@Override
+	public boolean operator(char operator, int position, NotationResult result) {
+		if (depth < 2) return result.fail(NotationError.MISSING_OPERAND, position);
+		emit(CompiledExpression.opcode(operator));
+		depth--;
+		return true;
+	}
+
+	/**
+	 * Finish the program
+	 * @param source the expression the program was compiled from
+	 * @param tokens the number of tokens the parser read from the source
+	 * @return the compiled expression
+	 * @throws InvalidNotationFormatExceptionV2 if the program does not leave exactly one result; an operand
+	 * left over is reported at the start of the second stack entry, the first that nothing combined
+	 */
+	CompiledExpression build(String source, int tokens) throws InvalidNotationFormatExceptionV2 {
+		if (depth != 1) throw new InvalidNotationFormatExceptionV2(NotationError.unreduced(depth), depth == 0 ? -1 : secondOperand);
+		return new CompiledExpression(source, tokens, Arrays.copyOf(code, codeLength),
+				Arrays.copyOf(constants, constantCount), maxDepth, variables.toArray(new String[0]),
+				Arrays.copyOf(variablePositions, variables.size()));
+	}
+
+	/**
+	 * Translate a failure to compile into the error that evaluating the expression without bindings
+	 * reports. The evaluators stop at the first variable they read, since it has no value, so a variable
+	 * that reached this builder before the failure is the first error
+	 * @param failure why the expression could not be compiled
+	 * @return the error evaluating the expression reports
+	 */
+	InvalidNotationFormatExceptionV2 evaluationError(InvalidNotationFormatExceptionV2 failure) {
+		if (variables.isEmpty()) return failure;
+		return new InvalidNotationFormatExceptionV2(NotationError.UNBOUND_VARIABLE, variablePositions[0]);
+	}
+
+	/**
+	 * Append a single int to the program, growing it as needed
+	 * @param value the opcode or constant index
+	 */
+	private void emit(int value) {
+		if (codeLength == code.length) code = Arrays.copyOf(code, codeLength * 2);
+		code[codeLength++] = value;
+	}
+}
@@ -0,0 +1,12 @@
+/**
+ * An Exception class for when an operation tries to add more data to the Queue
+ * than is allowable
+ * @author Mike Meyers
+ *
+ */
+@SuppressWarnings("serial")
+class QueueOverflowException extends RuntimeException{
+	public QueueOverflowException() {
+		super("The queue is full and the operation may not be completed");
+	}
+}
@@ -0,0 +1,12 @@
+/**
+ * An Exception class for when an operation tries to pull data that does not
+ * exist in the Queue
+ * @author Mike Meyers
+ *
+ */
+@SuppressWarnings("serial")
+class QueueUnderflowException extends RuntimeException {
+	public QueueUnderflowException() {
+		super("The queue is currently empty and the operation may not be completed");
+	}
+}
@@ -0,0 +1,23 @@
+/**
+ * Exception class for warning the client when they are attempting to add to a full Stack
+ * @author Mike Meyers
+ *
+ */
+@SuppressWarnings("serial")
+class StackOverflowException extends RuntimeException {
+	
+	/**
+	 * Default StackOverflow message
+	 */
+	public StackOverflowException() {
+		super("The operation may not be performed;");
+	}
+	
+	/**
+	 * Create a new StackoverflowException with a specific message
+	 * @param e the message to return to the client
+	 */
+	public StackOverflowException(String e) {
+		super(e);
+	}
+}
@@ -0,0 +1,23 @@
+/**
+ * Exception class for warning the client when they are attempting to access Stack data that doesn't exist
+ * @author Mike Meyers
+ *
+ */
+@SuppressWarnings("serial")
+class StackUnderflowException extends RuntimeException {
+	
+	/**
+	 * Default StackUnderflowException message
+	 */
+	public StackUnderflowException() {
+		super("The operation may not be performed");
+	}
+	
+	/**
+	 * Create a new StackUnderflowException with a specific message
+	 * @param e the message to return to the client
+	 */
+	public StackUnderflowException(String e) {
+		super(e);
+	}
+}
@@ -0,0 +1,20 @@
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * A slow call of one of NotationV2's standalone validators
+ * @author Mike Meyers
+ *
+ */
+@Name("notation.Validate")
+@Label("Notation Validate")
+@Description("A standalone validation check such as isBalanced or hasSequentialOperators")
+@Threshold("1 ms")
+class ValidateEvent extends NotationEvent {
+
+	@Label("Valid")
+	@Description("True if the expression passed the check")
+	boolean valid;
+}
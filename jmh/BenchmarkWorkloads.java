@@ -0,0 +1,292 @@
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * The workloads measured by the JMH benchmarks in the benchmarks package.
+ *
+ * JMH only accepts benchmark classes in a named package, and a named package cannot refer to the
+ * classes of the default package, so the benchmarks look these factories up by name and measure the
+ * LongSupplier they return. Each supplier performs one unit of work and returns a value derived from
+ * its result, which the benchmark returns to JMH so that the work cannot be discarded.
+ *
+ * Usage: gradle jmh [-PjmhArgs="benchmark pattern and JMH options"]
+ * Results, including the allocation rates from the GC profiler, are written to build/reports/jmh/results.json
+ *
+ * @author Mike Meyers
+ *
+ */
+public final class BenchmarkWorkloads {
+
+	static final int BATCH_SIZE = 100_000; //Expressions in each batch evaluation
+	static final int COLUMN_ROWS = 1_000_000; //Rows in each columnar evaluation
+	static final int STRUCTURE_ELEMENTS = 1_000; //Elements in each Stack/Queue push-then-pop round
+	static final int HANDOFF_ELEMENTS = 100_000; //Elements passed through a shared queue in each round
+	static final int HANDOFF_CAPACITY = 1_024; //Capacity of each shared queue
+
+	private BenchmarkWorkloads() {
+	}
+
+	/**
+	 * Call one NotationV2 entry point on an expression of a given size or nesting depth
+	 * @param operation the name of the NotationV2 method
+	 * @param shape "tokens" for a flat expression of that many tokens, or "depth" for one nested that deep
+	 * @param size the number of tokens or the nesting depth
+	 * @return the workload calling the method
+	 */
+	public static LongSupplier notation(String operation, String shape, int size) {
+		boolean infix = operation.equals("convertInfixToPostfix") || operation.equals("evaluateInfixExpression");
+		Random random = new Random(42);
+		String expr;
+		if (shape.equals("depth")) expr = infix ? ExpressionSamples.nestedInfix(size) : ExpressionSamples.nestedPostfix(size);
+		else expr = infix ? ExpressionSamples.infixOfSize(size, random) : ExpressionSamples.postfixOfSize(size, random);
+
+		switch (operation) {
+			case "convertInfixToPostfix" : return () -> NotationV2.convertInfixToPostfix(expr).length();
+			case "convertPostfixToInfix" : return () -> NotationV2.convertPostfixToInfix(expr).length();
+			case "evaluateInfixExpression" : return () -> Double.doubleToRawLongBits(NotationV2.evaluateInfixExpression(expr));
+			case "evaluatePostfixExpression" : return () -> Double.doubleToRawLongBits(NotationV2.evaluatePostfixExpression(expr));
+			default : throw new IllegalArgumentException("Unknown operation " + operation);
+		}
+	}
+
+	/**
+	 * Evaluate a batch of BATCH_SIZE small expressions, every 100th of them invalid
+	 * @param threads 0 to evaluate with NotationV2.evaluateBatch on the calling thread, or the number of
+	 * ForkJoinPool threads to give ParallelBatchEvaluator
+	 * @return the workload evaluating the batch, returning the number of failures
+	 */
+	public static LongSupplier batch(int threads) {
+		CharSequence[] batch = new CharSequence[BATCH_SIZE];
+		Random random = new Random(42);
+		for (int i = 0; i < BATCH_SIZE; i++) batch[i] = (i % 100 == 99) ? "1 + * 2" : ExpressionSamples.infixOfSize(20, random);
+		double[] results = new double[BATCH_SIZE];
+		int[] errors = new int[BATCH_SIZE];
+
+		if (threads == 0) return () -> NotationV2.evaluateBatch(batch, results, errors);
+		ParallelBatchEvaluator evaluator = new ParallelBatchEvaluator(new ForkJoinPool(threads));
+		return () -> evaluator.evaluate(batch, results, errors);
+	}
+
+	/**
+	 * Evaluate one formula over COLUMN_ROWS rows of three columns
+	 * @param path "columnar" for ColumnarEvaluator, "compiledPerRow" for CompiledExpression.evaluate
+	 * on each row, or "stringPerRow" for evaluateInfixExpression on a String built for each row
+	 * @return the workload evaluating every row, returning the bits of the last result
+	 */
+	public static LongSupplier columnar(String path) {
+		String formula = "(x * 1.5 + y) / (z + 2) - (x * 1.5 + y) * 0.25";
+		Random random = new Random(42);
+		double[][] columns = new double[3][COLUMN_ROWS];
+		for (double[] column : columns) {
+			for (int i = 0; i < COLUMN_ROWS; i++) column[i] = random.nextInt(1000) / 10.0;
+		}
+		double[] results = new double[COLUMN_ROWS];
+		CompiledExpression compiled = new ExpressionOptimizer().compile(formula);
+
+		switch (path) {
+			case "columnar" :
+				ColumnarEvaluator columnar = new ColumnarEvaluator(compiled);
+				return () -> {
+					columnar.evaluate(columns, 0, COLUMN_ROWS, results);
+					return Double.doubleToRawLongBits(results[COLUMN_ROWS - 1]);
+				};
+			case "compiledPerRow" :
+				double[] bindings = new double[3];
+				return () -> {
+					for (int i = 0; i < COLUMN_ROWS; i++) {
+						bindings[0] = columns[0][i];
+						bindings[1] = columns[1][i];
+						bindings[2] = columns[2][i];
+						results[i] = compiled.evaluate(bindings);
+					}
+					return Double.doubleToRawLongBits(results[COLUMN_ROWS - 1]);
+				};
+			case "stringPerRow" :
+				return () -> {
+					for (int i = 0; i < COLUMN_ROWS; i++) {
+						String row = "(" + columns[0][i] + " * 1.5 + " + columns[1][i] + ") / (" + columns[2][i] + " + 2) - ("
+								+ columns[0][i] + " * 1.5 + " + columns[1][i] + ") * 0.25";
+						results[i] = NotationV2.evaluateInfixExpression(row);
+					}
+					return Double.doubleToRawLongBits(results[COLUMN_ROWS - 1]);
+				};
+			default : throw new IllegalArgumentException("Unknown path " + path);
+		}
+	}
+
+	/**
+	 * Make an edit in the middle of an expression, re-evaluate it incrementally, undo the edit and
+	 * re-evaluate again. The incremental result after the edit is checked against a full evaluation first
+	 * @param edit "value" to type a digit, which only changes a number's value, or "structural" to type
+	 * an operator and operand, which changes the tree
+	 * @param tokens the size of the expression
+	 * @return the workload making two edits, returning the bits of both results
+	 */
+	public static LongSupplier incremental(String edit, int tokens) {
+		String expr = ExpressionSamples.infixOfSize(tokens, new Random(42));
+		int digit = expr.length() / 2;
+		while (!Character.isDigit(expr.charAt(digit))) digit++;
+		int at = digit + 1; //Just after the first digit of a number, so "+1" keeps the expression valid
+		String typed;
+		switch (edit) {
+			case "value" : typed = "7"; break;
+			case "structural" : typed = "+1"; break;
+			default : throw new IllegalArgumentException("Unknown edit " + edit);
+		}
+
+		IncrementalExpression incremental = new IncrementalExpression(expr);
+		incremental.edit(at, 0, typed);
+		String edited = expr.substring(0, at) + typed + expr.substring(at);
+		if (Double.doubleToRawLongBits(incremental.evaluate()) != Double.doubleToRawLongBits(NotationV2.evaluateInfixExpression(edited))) {
+			throw new IllegalStateException("The '" + typed + "' edit differs from a full evaluation");
+		}
+		incremental.edit(at, typed.length(), "");
+
+		return () -> {
+			incremental.edit(at, 0, typed);
+			long bits = Double.doubleToRawLongBits(incremental.evaluate());
+			incremental.edit(at, typed.length(), "");
+			return bits + Double.doubleToRawLongBits(incremental.evaluate());
+		};
+	}
+
+	/**
+	 * Push then pop STRUCTURE_ELEMENTS items through one of the Stack and Queue structures. Each
+	 * structure is reused across rounds, so the numbers reflect steady-state push/pop cost, and values
+	 * stay within the Integer cache, so any allocation measured belongs to the structure itself
+	 * @param structure the name of the class to measure
+	 * @return the workload running one round, returning the sum of the values removed
+	 */
+	public static LongSupplier structure(String structure) {
+		switch (structure) {
+			case "MyStack" : return stackRound(new MyStack<>());
+			case "ArrayStack" : return stackRound(new ArrayStack<>());
+			case "MyQueue" : return queueRound(new MyQueue<>());
+			case "ArrayQueue" : return queueRound(new ArrayQueue<>());
+			case "DoubleStack" :
+				DoubleStack doubles = new DoubleStack();
+				return () -> {
+					for (int i = 0; i < STRUCTURE_ELEMENTS; i++) doubles.push(i);
+					double total = 0;
+					while (!doubles.isEmpty()) total += doubles.pop();
+					return (long) total;
+				};
+			default : throw new IllegalArgumentException("Unknown structure " + structure);
+		}
+	}
+
+	/**
+	 * Hand HANDOFF_ELEMENTS elements from producer threads to consumer threads through a shared queue.
+	 * Every queue is used through the same non-blocking offer/poll loop, so the comparison is of the
+	 * queues themselves rather than of their blocking strategies
+	 * @param queue "ConcurrentArrayQueue", "MyQueue.synchronized" for a MyQueue guarded by synchronized,
+	 * or "ArrayBlockingQueue"
+	 * @param threads the number of producer threads, and of consumer threads
+	 * @return the workload running one round, returning the sum of the values received
+	 */
+	public static LongSupplier handoff(String queue, int threads) {
+		switch (queue) {
+			case "ConcurrentArrayQueue" :
+				ConcurrentArrayQueue<Integer> lockFree = new ConcurrentArrayQueue<>(HANDOFF_CAPACITY);
+				return handoffRound(threads, lockFree::offer, lockFree::poll);
+			case "MyQueue.synchronized" :
+				MyQueue<Integer> myQueue = new MyQueue<>(HANDOFF_CAPACITY);
+				return handoffRound(threads, e -> {
+					synchronized (myQueue) {
+						if (myQueue.isFull()) return false;
+						return myQueue.enqueue(e);
+					}
+				}, () -> {
+					synchronized (myQueue) {
+						return myQueue.isEmpty() ? null : myQueue.dequeue();
+					}
+				});
+			case "ArrayBlockingQueue" :
+				ArrayBlockingQueue<Integer> blocking = new ArrayBlockingQueue<>(HANDOFF_CAPACITY);
+				return handoffRound(threads, blocking::offer, blocking::poll);
+			default : throw new IllegalArgumentException("Unknown queue " + queue);
+		}
+	}
+
+	/**
+	 * Build one push-then-pop round through a Stack
+	 */
+	private static LongSupplier stackRound(StackInterface<Integer> stack) {
+		return () -> {
+			for (int i = 0; i < STRUCTURE_ELEMENTS; i++) stack.push(i & 127);
+			long total = 0;
+			while (!stack.isEmpty()) total += stack.pop();
+			return total;
+		};
+	}
+
+	/**
+	 * Build one enqueue-then-dequeue round through a Queue
+	 */
+	private static LongSupplier queueRound(QueueInterface<Integer> queue) {
+		return () -> {
+			for (int i = 0; i < STRUCTURE_ELEMENTS; i++) queue.enqueue(i & 127);
+			long total = 0;
+			while (!queue.isEmpty()) total += queue.dequeue();
+			return total;
+		};
+	}
+
+	/**
+	 * Build one handoff round: start the producers and consumers, wait for them, and check that every
+	 * element arrived exactly once
+	 */
+	private static LongSupplier handoffRound(int threads, Predicate<Integer> offer, Supplier<Integer> poll) {
+		int perThread = HANDOFF_ELEMENTS / threads;
+		return () -> {
+			LongAdder received = new LongAdder();
+			Thread[] workers = new Thread[threads * 2];
+			for (int t = 0; t < threads; t++) {
+				workers[t] = new Thread(() -> {
+					for (int i = 0; i < perThread; i++) {
+						Integer value = i & 127;
+						for (int spins = 0; !offer.test(value); spins++) backOff(spins);
+					}
+				});
+				workers[threads + t] = new Thread(() -> {
+					long total = 0;
+					for (int i = 0; i < perThread; i++) {
+						Integer value;
+						for (int spins = 0; (value = poll.get()) == null; spins++) backOff(spins);
+						total += value;
+					}
+					received.add(total);
+				});
+			}
+			for (Thread worker : workers) worker.start();
+			try {
+				for (Thread worker : workers) worker.join();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException(e);
+			}
+
+			//Each producer sends 0..127 repeatedly, so the expected total is known in advance
+			long expected = 0;
+			for (int i = 0; i < perThread; i++) expected += i & 127;
+			if (received.sum() != expected * threads) throw new IllegalStateException("The queue lost or duplicated elements");
+			return received.sum();
+		};
+	}
+
+	/**
+	 * Wait briefly before retrying a full or empty queue: spin at first, then give up the processor so
+	 * the other side can make progress when there are more threads than cores
+	 * @param spins the number of retries so far
+	 */
+	private static void backOff(int spins) {
+		if (spins < 64) Thread.onSpinWait();
+		else Thread.yield();
+	}
+}
@@ -0,0 +1,50 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Batch evaluation of 100k small infix expressions, sequentially and across a growing number of
+ * threads. Times are per expression.
+ *
+ * @author Mike Meyers
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class BatchBenchmark {
+
+	//0 evaluates with NotationV2.evaluateBatch on the benchmark thread; otherwise the ForkJoinPool size
+	//given to ParallelBatchEvaluator
+	@Param({"0", "1", "2", "4"})
+	public int threads;
+
+	private LongSupplier work;
+
+	@Setup
+	public void setUp() {
+		work = Workloads.create("batch", threads);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(100_000)
+	public long run() {
+		return work.getAsLong();
+	}
+}
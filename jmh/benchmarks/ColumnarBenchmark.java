@@ -0,0 +1,60 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One formula evaluated over 1M rows: a column at a time by ColumnarEvaluator, a row at a time by
+ * the compiled program, and a row at a time from a String built for each row. Times are per row.
+ *
+ * @author Mike Meyers
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ColumnarBenchmark {
+
+	@Param({"columnar", "compiledPerRow", "stringPerRow"})
+	public String path;
+
+	private LongSupplier work;
+
+	@Setup
+	public void setUp() {
+		work = Workloads.create("columnar", path);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(1_000_000)
+	public long run() {
+		return work.getAsLong();
+	}
+
+	/**
+	 * The same work with C2's loop vectorizer (SuperWord) turned off. The gap between this and run() is
+	 * what SIMD contributes to the columnar path; the row-at-a-time paths have no array loops to vectorize,
+	 * so they serve as the control, and any gap between their two scores is run-to-run noise
+	 */
+	@Benchmark
+	@OperationsPerInvocation(1_000_000)
+	@Fork(value = 2, jvmArgsAppend = "-XX:-UseSuperWord")
+	public long runWithoutSuperWord() {
+		return work.getAsLong();
+	}
+}
@@ -0,0 +1,48 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Every NotationV2 conversion and evaluation entry point, on flat expressions from 10 to 1M tokens.
+ *
+ * @author Mike Meyers
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ExpressionSizeBenchmark {
+
+	@Param({"convertInfixToPostfix", "evaluateInfixExpression", "convertPostfixToInfix", "evaluatePostfixExpression"})
+	public String operation;
+
+	@Param({"10", "100", "1000", "10000", "100000", "1000000"})
+	public int tokens;
+
+	private LongSupplier work;
+
+	@Setup
+	public void setUp() {
+		work = Workloads.create("notation", operation, "tokens", tokens);
+	}
+
+	@Benchmark
+	public long run() {
+		return work.getAsLong();
+	}
+}
@@ -0,0 +1,52 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Edits in the middle of expressions from 10 to 1M tokens, each re-evaluated by IncrementalExpression:
+ * typing a digit, which only changes a number's value, and typing an operator and operand, which changes
+ * the tree. Each invocation makes an edit and undoes it; times are per edit and re-evaluation.
+ *
+ * @author Mike Meyers
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class IncrementalBenchmark {
+
+	@Param({"value", "structural"})
+	public String edit;
+
+	@Param({"10", "100", "1000", "10000", "100000", "1000000"})
+	public int tokens;
+
+	private LongSupplier work;
+
+	@Setup
+	public void setUp() {
+		work = Workloads.create("incremental", edit, tokens);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(2)
+	public long run() {
+		return work.getAsLong();
+	}
+}
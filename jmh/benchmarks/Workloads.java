@@ -0,0 +1,40 @@
+package benchmarks;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.function.LongSupplier;
+
+/**
+ * Looks up the workloads of BenchmarkWorkloads, which lives in the default package and so can only be
+ * reached by name from here.
+ *
+ * @author Mike Meyers
+ *
+ */
+final class Workloads {
+
+	private Workloads() {
+	}
+
+	/**
+	 * Create a workload by calling one of the BenchmarkWorkloads factories
+	 * @param factory the name of the factory method
+	 * @param args the arguments to pass to it
+	 * @return the workload it returns
+	 */
+	static LongSupplier create(String factory, Object... args) {
+		try {
+			for (Method method : Class.forName("BenchmarkWorkloads").getMethods()) {
+				if (method.getName().equals(factory)) return (LongSupplier) method.invoke(null, args);
+			}
+			throw new IllegalArgumentException("No workload factory named " + factory);
+		}
+		catch (InvocationTargetException e) {
+			if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		}
+		catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}